@@ -0,0 +1,37 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tracks the distinct elements of the arrays merged with {@link Strategy#UNION}, in the order they are seen.
+ * Elements are told apart by the key of the rule's keyField, or by value when there is no keyField or an
+ * element has no key. Values are hashed and compared structurally, so every element is checked in constant
+ * expected time.
+ */
+final class ArrayUnion {
+
+    private final KeyExtractor keys;
+    private final Set<Object> seenKeys = new HashSet<>();
+    private final Set<JsonNode> seenValues = new HashSet<>();
+
+    /**
+     * @param keys the compiled keyField of the rule, or null to compare elements by value only
+     */
+    ArrayUnion(KeyExtractor keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Records an element.
+     *
+     * @param item the array element
+     * @return true if no equal element was seen before, so the element belongs in the result
+     */
+    boolean add(JsonNode item) {
+        Object key = keys != null ? keys.extract(item) : null;
+        return key != null ? seenKeys.add(key) : seenValues.add(item);
+    }
+}
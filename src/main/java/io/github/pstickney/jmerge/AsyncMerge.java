@@ -0,0 +1,252 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A merge whose base and overlay arrive incrementally as chunks of bytes, such as the buffers of a
+ * network read. Each chunk is parsed as soon as it is fed with Jackson's non-blocking parser, so parsing
+ * overlaps with the reads and no complete copy of the encoded input is kept. Once both documents have
+ * ended, they are merged on the executor and {@link #result()} completes.
+ * <p>
+ * Formats without a non-blocking parser, such as YAML and CBOR, are collected as bytes while they are
+ * fed and parsed on the executor once complete.
+ * <p>
+ * Feeding never blocks and may be done from an event loop. The base and the overlay may be fed from
+ * different threads, but the chunks of one document must be fed one at a time and in order. A chunk is
+ * consumed before the feed returns, so its array may be reused afterwards. Once the result has
+ * completed, for instance because it failed or was cancelled, further chunks are ignored.
+ */
+public final class AsyncMerge {
+
+    private final Merger merger;
+    private final Executor executor;
+    private final Document base;
+    private final Document overlay;
+    private final AtomicInteger pending = new AtomicInteger(2);
+    private final CompletableFuture<JsonNode> result = new CompletableFuture<>();
+
+    AsyncMerge(Merger merger, Executor executor) throws IOException {
+        this.merger = merger;
+        this.executor = executor;
+        this.base = new Document();
+        this.overlay = new Document();
+    }
+
+    /**
+     * Feeds the next chunk of the base document.
+     *
+     * @param data the chunk
+     * @return this AsyncMerge
+     * @throws IOException           if the chunk cannot be parsed
+     * @throws IllegalStateException if the base has already ended
+     */
+    public AsyncMerge feedBase(byte[] data) throws IOException {
+        return feedBase(data, 0, data.length);
+    }
+
+    /**
+     * Feeds the next chunk of the base document.
+     *
+     * @param data   the array holding the chunk
+     * @param offset the offset of the chunk in the array
+     * @param length the length of the chunk
+     * @return this AsyncMerge
+     * @throws IOException           if the chunk cannot be parsed
+     * @throws IllegalStateException if the base has already ended
+     */
+    public AsyncMerge feedBase(byte[] data, int offset, int length) throws IOException {
+        base.feed(data, offset, length);
+        return this;
+    }
+
+    /**
+     * Marks the end of the base document.
+     *
+     * @throws IOException           if the base is incomplete or cannot be parsed
+     * @throws IllegalStateException if the base has already ended
+     */
+    public void endBase() throws IOException {
+        base.end();
+    }
+
+    /**
+     * Feeds the next chunk of the overlay document.
+     *
+     * @param data the chunk
+     * @return this AsyncMerge
+     * @throws IOException           if the chunk cannot be parsed
+     * @throws IllegalStateException if the overlay has already ended
+     */
+    public AsyncMerge feedOverlay(byte[] data) throws IOException {
+        return feedOverlay(data, 0, data.length);
+    }
+
+    /**
+     * Feeds the next chunk of the overlay document.
+     *
+     * @param data   the array holding the chunk
+     * @param offset the offset of the chunk in the array
+     * @param length the length of the chunk
+     * @return this AsyncMerge
+     * @throws IOException           if the chunk cannot be parsed
+     * @throws IllegalStateException if the overlay has already ended
+     */
+    public AsyncMerge feedOverlay(byte[] data, int offset, int length) throws IOException {
+        overlay.feed(data, offset, length);
+        return this;
+    }
+
+    /**
+     * Marks the end of the overlay document.
+     *
+     * @throws IOException           if the overlay is incomplete or cannot be parsed
+     * @throws IllegalStateException if the overlay has already ended
+     */
+    public void endOverlay() throws IOException {
+        overlay.end();
+    }
+
+    /**
+     * Returns the future result of the merge, which completes on the executor once both documents
+     * have ended, or completes exceptionally if either document cannot be parsed.
+     *
+     * @return the future merged JsonNode
+     */
+    public CompletableFuture<JsonNode> result() {
+        return result;
+    }
+
+    /**
+     * Returns the future result of the merge encoded in the format of the Merger.
+     *
+     * @return the future merged document
+     */
+    public CompletableFuture<byte[]> resultBytes() {
+        return result.thenApply(node -> {
+            try {
+                return merger.getWriter().writeValueAsBytes(node);
+            } catch (JsonProcessingException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Called when a document has ended; merges on the executor once both have.
+     */
+    private void ended() {
+        if (pending.decrementAndGet() != 0)
+            return;
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(merger.merge(base.read(), overlay.read()));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * One of the two documents, parsed into a token buffer as it is fed, or collected as bytes
+     * if the format has no non-blocking parser.
+     */
+    private final class Document {
+
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final TokenBuffer tokens;
+        private final ByteArrayOutputStream bytes;
+        private boolean ended;
+
+        Document() throws IOException {
+            JsonFactory factory = merger.getMapper().getFactory();
+            if (factory.canParseAsync()) {
+                parser = factory.createNonBlockingByteArrayParser();
+                feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+                tokens = new TokenBuffer(parser);
+                bytes = null;
+            } else {
+                parser = null;
+                feeder = null;
+                tokens = null;
+                bytes = new ByteArrayOutputStream();
+            }
+        }
+
+        synchronized void feed(byte[] data, int offset, int length) throws IOException {
+            if (ended)
+                throw new IllegalStateException("Document has already ended");
+            if (result.isDone())
+                return;
+            if (bytes != null) {
+                bytes.write(data, offset, length);
+                return;
+            }
+            try {
+                feeder.feedInput(data, offset, offset + length);
+                drain();
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        synchronized void end() throws IOException {
+            if (ended)
+                throw new IllegalStateException("Document has already ended");
+            ended = true;
+            if (result.isDone())
+                return;
+            if (feeder != null) {
+                try {
+                    feeder.endOfInput();
+                    drain();
+                    parser.close();
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                    throw e;
+                }
+            }
+            ended();
+        }
+
+        /**
+         * Copies the tokens available from the chunks fed so far.
+         */
+        private void drain() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE)
+                tokens.copyCurrentEvent(parser);
+        }
+
+        /**
+         * Builds the tree of the ended document; an empty document reads as a missing node.
+         */
+        synchronized JsonNode read() throws IOException {
+            if (bytes != null)
+                return merger.getReader().readTree(bytes.toByteArray());
+            try (JsonParser buffered = tokens.asParser()) {
+                JsonNode node = merger.getReader().readTree(buffered);
+                return node != null ? node : MissingNode.getInstance();
+            }
+        }
+    }
+}
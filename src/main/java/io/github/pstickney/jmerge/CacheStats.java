@@ -0,0 +1,24 @@
+package io.github.pstickney.jmerge;
+
+import lombok.Value;
+
+/**
+ * A snapshot of the statistics of a {@link CachingMerger}.
+ */
+@Value
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    int size;
+
+    /**
+     * The fraction of lookups that were served from the cache.
+     *
+     * @return the hit rate between 0 and 1, or 0 if there were no lookups yet
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Merger that remembers the results of recent merges. Results are keyed by a 128-bit content hash
+ * of both inputs and of the configuration, so repeated merges of the same documents with the same
+ * strategies and rules are answered without merging again, even when the inputs are new instances.
+ * <p>
+ * The hash is not an exact comparison of the inputs, so each entry keeps its inputs, the strings
+ * themselves or private copies of the byte arrays, and a cached result is only returned if they equal
+ * the inputs of the merge. Inputs that merely collide with an entry are merged and replace it.
+ * <p>
+ * Only merges of serialized documents are cached: String merges return the cached text and
+ * {@code byte[]} merges a copy of the cached bytes. A hit on a tree would cost a hash, a comparison
+ * and a copy of the result, each as much work as merging the trees again, so tree merges and all
+ * other merge methods go straight to the delegate. The least recently used results are evicted once
+ * the cache holds {@code maximumSize}.
+ * <p>
+ * The configuration is that of the delegate. A CachingMerger is thread-safe if the delegate is.
+ */
+public class CachingMerger extends Merger {
+
+    private static final int STRING_RESULT = 1;
+    private static final int BYTES_RESULT = 2;
+
+    private final Merger delegate;
+    private final ContentHash.Key configKey;
+    private final Map<ContentHash.Key, Entry> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a CachingMerger in front of the given Merger.
+     *
+     * @param delegate    the Merger computing results on a cache miss
+     * @param maximumSize the maximum number of results to keep
+     */
+    public CachingMerger(Merger delegate, int maximumSize) {
+        super(delegate.getConfig());
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("maximumSize must be positive");
+        this.delegate = delegate;
+        this.configKey = fingerprint();
+        this.cache = new LinkedHashMap<ContentHash.Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ContentHash.Key, Entry> eldest) {
+                if (size() <= maximumSize)
+                    return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Merges two JSON/YAML strings, returning the cached result if the same merge was done before.
+     *
+     * @param base    the base JSON/YAML string
+     * @param overlay the overlay JSON/YAML string to merge on top of the base
+     * @return the merged JSON/YAML string
+     * @throws JsonProcessingException if parsing or processing fails
+     */
+    @Override
+    public String merge(String base, String overlay) throws JsonProcessingException {
+        ContentHash.Key key = new ContentHash().update(STRING_RESULT).update(configKey).update(base).update(overlay).key();
+        String cached = (String) lookup(key, base, overlay);
+        if (cached != null)
+            return cached;
+
+        String result = delegate.merge(base, overlay);
+        store(key, new Entry(base, overlay, result));
+        return result;
+    }
+
+    /**
+     * Merges two encoded documents, returning a copy of the cached result if the same merge was done before.
+     *
+     * @param base    the base JSON/YAML document
+     * @param overlay the overlay JSON/YAML document to merge on top of the base
+     * @return the merged JSON/YAML document
+     * @throws IOException if parsing or processing fails
+     */
+    @Override
+    public byte[] merge(byte[] base, byte[] overlay) throws IOException {
+        ContentHash.Key key = new ContentHash().update(BYTES_RESULT).update(configKey).update(base).update(overlay).key();
+        byte[] cached = (byte[]) lookup(key, base, overlay);
+        if (cached == null) {
+            // The caller is free to change the arrays later, so the entry keeps copies of them
+            cached = delegate.merge(base, overlay);
+            store(key, new Entry(base.clone(), overlay.clone(), cached));
+        }
+        return cached.clone();
+    }
+
+    /**
+     * Merges two JsonNode trees with the delegate; tree merges are not cached.
+     *
+     * @param base    the base JsonNode
+     * @param overlay the overlay JsonNode to merge on top of the base
+     * @return the merged JsonNode result
+     */
+    @Override
+    public JsonNode merge(JsonNode base, JsonNode overlay) {
+        return delegate.merge(base, overlay);
+    }
+
+    /**
+     * Returns the current statistics of the cache.
+     *
+     * @return the CacheStats snapshot
+     */
+    public CacheStats getStats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Removes all cached results. The statistics are kept.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    @Override
+    protected ObjectNode getObjectNode() {
+        return delegate.getObjectNode();
+    }
+
+    @Override
+    protected ArrayNode getArrayNode() {
+        return delegate.getArrayNode();
+    }
+
+    @Override
+    protected ObjectNode getObjectNode(int expectedSize) {
+        return delegate.getObjectNode(expectedSize);
+    }
+
+    @Override
+    protected ArrayNode getArrayNode(int expectedSize) {
+        return delegate.getArrayNode(expectedSize);
+    }
+
+    @Override
+    protected JsonNodeFactory getNodeFactory() {
+        return delegate.getNodeFactory();
+    }
+
+    @Override
+    protected ObjectMapper getMapper() {
+        return delegate.getMapper();
+    }
+
+    /**
+     * Looks up the result cached for the key, provided the entry was stored for equal inputs.
+     */
+    private Object lookup(ContentHash.Key key, Object base, Object overlay) {
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        Object cached = entry != null && same(entry.base, base) && same(entry.overlay, overlay) ? entry.result : null;
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Compares inputs exactly, byte arrays by their content.
+     */
+    private static boolean same(Object cached, Object input) {
+        if (cached instanceof byte[])
+            return Arrays.equals((byte[]) cached, (byte[]) input);
+        return cached.equals(input);
+    }
+
+    private void store(ContentHash.Key key, Entry entry) {
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Hashes everything in the configuration that affects a result.
+     */
+    private ContentHash.Key fingerprint() {
+        CompiledConfig config = getConfig();
+        ContentHash hash = new ContentHash()
+            .update(config.isPrettyPrint() ? 1L : 0L)
+            .update(String.valueOf(config.getArrayStrategy()))
+            .update(String.valueOf(config.getObjectStrategy()));
+        hash.update(config.getRules().size());
+        for (MergeRule rule : config.getRules()) {
+            hash.update(rule.getPath())
+                .update(rule.getKeyField())
+                .update(String.valueOf(rule.getStrategy()));
+        }
+        return hash.key();
+    }
+
+    /**
+     * A cached result with the inputs it was merged from.
+     */
+    private static final class Entry {
+        private final Object base;
+        private final Object overlay;
+        private final Object result;
+
+        Entry(Object base, Object overlay, Object result) {
+            this.base = base;
+            this.overlay = overlay;
+            this.result = result;
+        }
+    }
+}
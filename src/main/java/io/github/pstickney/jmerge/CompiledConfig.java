@@ -0,0 +1,151 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.github.pstickney.jmerge.exception.ConfigException;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An immutable, validated snapshot of a {@link MergeConfig}, created with {@link MergeConfig#compile()}.
+ * The rules are copied and compiled into a {@link RuleIndex}, so later changes to the MergeConfig
+ * or its rules do not affect merges that use the snapshot.
+ * <p>
+ * Compiling reports configurations that could only fail during a merge: an object strategy other
+ * than MERGE or REPLACE, rules without a path or strategy, array indexes other than {@code [*]} in a path,
+ * several different rules for the same path, unclosed quotes in a keyField, a non-positive parallel threshold and a non-positive spill budget.
+ */
+@Getter
+public final class CompiledConfig {
+
+    private final boolean prettyPrint;
+    private final Strategy arrayStrategy;
+    private final Strategy objectStrategy;
+    private final List<MergeRule> rules;
+    private final boolean structuralSharing;
+    private final boolean parallel;
+    private final int parallelThreshold;
+    private final ForkJoinPool parallelPool;
+    private final boolean memoryMapFiles;
+    private final long spillBudget;
+    private final MergeListener listener;
+    private final JsonNodeFactory nodeFactory;
+    private final RuleIndex ruleIndex;
+    @Getter(AccessLevel.NONE)
+    private final boolean idempotent;
+
+    private CompiledConfig(MergeConfig config, List<MergeRule> rules) {
+        this.prettyPrint = Boolean.TRUE.equals(config.getPrettyPrint());
+        this.arrayStrategy = config.getArrayStrategy();
+        this.objectStrategy = config.getObjectStrategy();
+        this.rules = Collections.unmodifiableList(rules);
+        this.structuralSharing = Boolean.TRUE.equals(config.getStructuralSharing());
+        this.parallel = Boolean.TRUE.equals(config.getParallel());
+        this.parallelThreshold = config.getParallelThreshold() != null ? config.getParallelThreshold() : 1;
+        this.parallelPool = config.getParallelPool();
+        this.memoryMapFiles = Boolean.TRUE.equals(config.getMemoryMapFiles());
+        this.spillBudget = config.getSpillBudget() != null ? config.getSpillBudget() : 0;
+        this.listener = config.getListener() != null ? config.getListener() : MergeListener.NONE;
+        this.nodeFactory = config.getNodeFactory();
+        this.ruleIndex = RuleIndex.compile(rules);
+        this.idempotent = ruleIndex.isIdempotent()
+            && arrayStrategy == Strategy.REPLACE
+            && (objectStrategy == Strategy.MERGE || objectStrategy == Strategy.REPLACE);
+    }
+
+    /**
+     * Validates and compiles the given configuration.
+     *
+     * @param config the configuration to compile
+     * @return the CompiledConfig
+     * @throws ConfigException if the configuration is invalid
+     */
+    static CompiledConfig of(MergeConfig config) {
+        if (config.getArrayStrategy() == null)
+            throw new ConfigException("Missing arrayStrategy");
+        if (config.getObjectStrategy() != Strategy.MERGE && config.getObjectStrategy() != Strategy.REPLACE)
+            throw new ConfigException(String.format("Invalid objectStrategy '%s', must be MERGE or REPLACE", config.getObjectStrategy()));
+        if (config.getParallelThreshold() != null && config.getParallelThreshold() < 1)
+            throw new ConfigException(String.format("Invalid parallelThreshold '%s', must be positive", config.getParallelThreshold()));
+        if (config.getSpillBudget() != null && config.getSpillBudget() < 1)
+            throw new ConfigException(String.format("Invalid spillBudget '%s', must be positive", config.getSpillBudget()));
+
+        List<MergeRule> rules = new ArrayList<>();
+        Map<String, MergeRule> rulesByPath = new HashMap<>();
+        if (config.getRules() != null) {
+            for (MergeRule rule : config.getRules()) {
+                MergeRule copy = new MergeRule(rule.getPath(), rule.getKeyField(), rule.getStrategy());
+                validate(copy);
+
+                MergeRule existing = rulesByPath.putIfAbsent(RuleIndex.normalize(copy.getPath()), copy);
+                if (existing == null) {
+                    rules.add(copy);
+                } else if (existing.getStrategy() != copy.getStrategy() || !Objects.equals(existing.getKeyField(), copy.getKeyField())) {
+                    throw new ConfigException(String.format("Conflicting merge rules for '%s': %s and %s", copy.getPath(), existing, copy));
+                }
+            }
+        }
+        return new CompiledConfig(config, rules);
+    }
+
+    private static void validate(MergeRule rule) {
+        if (rule.getPath() == null)
+            throw new ConfigException(String.format("Missing path in merge rule %s", rule));
+        try {
+            RuleIndex.normalize(rule.getPath());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(e.getMessage(), e);
+        }
+        if (rule.getStrategy() == null)
+            throw new ConfigException(String.format("Missing strategy in merge rule for '%s'", rule.getPath()));
+        if (rule.getKeyField() != null) {
+            try {
+                KeyExtractor.compile(rule.getKeyField());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigException(String.format("Invalid keyField in merge rule for '%s': %s", rule.getPath(), e.getMessage()), e);
+            }
+        }
+    }
+
+    /**
+     * Converts this snapshot back into a new MergeConfig with copies of its rules.
+     *
+     * @return the equivalent MergeConfig
+     */
+    MergeConfig toMergeConfig() {
+        List<MergeRule> copies = new ArrayList<>(rules.size());
+        for (MergeRule rule : rules) {
+            copies.add(new MergeRule(rule.getPath(), rule.getKeyField(), rule.getStrategy()));
+        }
+        return MergeConfig.builder()
+            .prettyPrint(prettyPrint)
+            .arrayStrategy(arrayStrategy)
+            .objectStrategy(objectStrategy)
+            .rules(copies)
+            .structuralSharing(structuralSharing)
+            .parallel(parallel)
+            .parallelThreshold(parallelThreshold)
+            .parallelPool(parallelPool)
+            .memoryMapFiles(memoryMapFiles)
+            .spillBudget(spillBudget > 0 ? spillBudget : null)
+            .listener(listener != MergeListener.NONE ? listener : null)
+            .nodeFactory(nodeFactory)
+            .build();
+    }
+
+    /**
+     * Whether merging any subtree with an equal subtree yields that same subtree, see {@link MergeContext#isIdempotent()}.
+     *
+     * @return true if equal inputs may short-circuit
+     */
+    boolean isIdempotent() {
+        return idempotent;
+    }
+}
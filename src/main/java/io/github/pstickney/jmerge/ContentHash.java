@@ -0,0 +1,89 @@
+package io.github.pstickney.jmerge;
+
+/**
+ * A 128-bit content hash built from two independent 64-bit hashes, used to key cached merge results.
+ * Strings and byte arrays are fed in with their lengths, so different sequences of values do not run
+ * together into the same input.
+ * <p>
+ * Equal content always gives equal hashes. The hash is not cryptographic, so different content may
+ * still collide; a matching hash alone does not prove that two inputs are equal.
+ */
+final class ContentHash {
+
+    private static final long PRIME_1 = 0x100000001B3L;
+    private static final long PRIME_2 = 0x9E3779B97F4A7C15L;
+
+    private long h1 = 0xCBF29CE484222325L;
+    private long h2 = 0x84222325CBF29CE4L;
+
+    ContentHash update(long value) {
+        h1 = (h1 ^ value) * PRIME_1;
+        h2 = Long.rotateLeft(h2 + value * PRIME_2, 31) * 0xBF58476D1CE4E5B9L;
+        return this;
+    }
+
+    ContentHash update(String value) {
+        if (value == null)
+            return update(-1L);
+        update(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            update((long) value.charAt(i));
+        }
+        return this;
+    }
+
+    ContentHash update(Key key) {
+        return update(key.high).update(key.low);
+    }
+
+    ContentHash update(byte[] value) {
+        update(value.length);
+        for (byte b : value) {
+            update((long) b);
+        }
+        return this;
+    }
+
+    /**
+     * Finalizes the hash into a key. The hash may be fed further afterwards.
+     *
+     * @return the key for the content fed so far
+     */
+    Key key() {
+        return new Key(mix(h1), mix(h2));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    static final class Key {
+        private final long high;
+        private final long low;
+
+        private Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (high ^ (high >>> 32));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.pstickney.jmerge.exception.ConfigException;
+import io.github.pstickney.jmerge.util.MergerUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Merges documents given in different formats, e.g. a YAML base with a JSON overlay, and writes the
+ * result in a third. Each input is read by the parser of its own format and the result is written by
+ * the generator of the output format, with the base streamed from its parser straight into the output
+ * generator as in {@link Merger#merge(JsonParser, JsonNode, JsonGenerator)}; nothing is converted to an
+ * intermediate text.
+ * <p>
+ * The Merger of each format is created on first use and shares the compiled configuration, so a
+ * CrossFormatMerger can be shared by any number of threads.
+ *
+ * <pre>{@code
+ * CrossFormatMerger merger = new CrossFormatMerger(config);
+ * String merged = merger.merge(baseYaml, DocumentFormat.YAML, overrideJson, DocumentFormat.JSON, DocumentFormat.YAML);
+ * }</pre>
+ */
+public class CrossFormatMerger {
+
+    private final CompiledConfig config;
+    private final ConcurrentMap<DocumentFormat, Merger> mergers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a CrossFormatMerger with the default merge configuration.
+     */
+    public CrossFormatMerger() {
+        this(new MergeConfig());
+    }
+
+    /**
+     * Constructs a CrossFormatMerger with the specified merge configuration.
+     *
+     * @param config the merge configuration to apply during merging
+     * @throws ConfigException if the configuration is invalid
+     */
+    public CrossFormatMerger(MergeConfig config) {
+        this(config.compile());
+    }
+
+    /**
+     * Constructs a CrossFormatMerger with the specified compiled merge configuration.
+     *
+     * @param config the compiled merge configuration to apply during merging
+     */
+    public CrossFormatMerger(CompiledConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns the compiled configuration of this CrossFormatMerger.
+     *
+     * @return the CompiledConfig
+     */
+    public CompiledConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the Merger reading and writing the given format with the configuration of this CrossFormatMerger.
+     *
+     * @param format the document format
+     * @return the Merger of the format
+     */
+    public Merger merger(DocumentFormat format) {
+        Merger merger = mergers.get(format);
+        if (merger == null)
+            merger = mergers.computeIfAbsent(format, f -> f.merger(config));
+        return merger;
+    }
+
+    /**
+     * Merges two text documents in the given formats and returns the result as text in the output format.
+     *
+     * @param base          the base document
+     * @param baseFormat    the format of the base
+     * @param overlay       the overlay document to merge on top of the base
+     * @param overlayFormat the format of the overlay
+     * @param outputFormat  the format of the result
+     * @return the merged document
+     * @throws IOException              if parsing or processing fails
+     * @throws IllegalArgumentException if one of the formats is binary
+     */
+    public String merge(String base, DocumentFormat baseFormat, String overlay, DocumentFormat overlayFormat, DocumentFormat outputFormat) throws IOException {
+        for (DocumentFormat format : new DocumentFormat[]{baseFormat, overlayFormat, outputFormat}) {
+            if (format.isBinary())
+                throw new IllegalArgumentException(String.format("%s documents cannot be merged as strings, merge byte[] instead", format));
+        }
+        JsonNode overlayNode = merger(overlayFormat).getReader().readTree(overlay);
+        Merger output = merger(outputFormat);
+
+        StringWriter writer = new StringWriter(base.length() + overlay.length());
+        try (JsonParser parser = merger(baseFormat).getReader().createParser(base); JsonGenerator generator = output.getWriter().createGenerator(writer)) {
+            output.merge(parser, overlayNode, generator);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Merges two encoded documents in the given formats and returns the result encoded in the output format.
+     *
+     * @param base          the base document
+     * @param baseFormat    the format of the base
+     * @param overlay       the overlay document to merge on top of the base
+     * @param overlayFormat the format of the overlay
+     * @param outputFormat  the format of the result
+     * @return the merged document
+     * @throws IOException if parsing or processing fails
+     */
+    public byte[] merge(byte[] base, DocumentFormat baseFormat, byte[] overlay, DocumentFormat overlayFormat, DocumentFormat outputFormat) throws IOException {
+        JsonNode overlayNode = merger(overlayFormat).getReader().readTree(overlay);
+        Merger output = merger(outputFormat);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(base.length + overlay.length);
+        try (JsonParser parser = merger(baseFormat).getReader().createParser(base); JsonGenerator generator = output.getWriter().createGenerator(stream, JsonEncoding.UTF8)) {
+            output.merge(parser, overlayNode, generator);
+        }
+        return stream.toByteArray();
+    }
+
+    /**
+     * Merges two documents in the given formats, streaming the base from its input stream and the result
+     * to the output stream in the output format. Only the overlay is read fully into memory.
+     *
+     * @param base          the input stream for the base document
+     * @param baseFormat    the format of the base
+     * @param overlay       the input stream for the overlay document
+     * @param overlayFormat the format of the overlay
+     * @param output        the output stream to write the merged document to
+     * @param outputFormat  the format of the result
+     * @throws IOException if reading or writing fails
+     */
+    public void merge(InputStream base, DocumentFormat baseFormat, InputStream overlay, DocumentFormat overlayFormat,
+                      OutputStream output, DocumentFormat outputFormat) throws IOException {
+        JsonNode overlayNode = merger(overlayFormat).getReader().readTree(overlay);
+        Merger outputMerger = merger(outputFormat);
+
+        try (JsonParser parser = merger(baseFormat).getReader().createParser(base); JsonGenerator generator = outputMerger.getWriter().createGenerator(output, JsonEncoding.UTF8)) {
+            outputMerger.merge(parser, overlayNode, generator);
+        }
+    }
+
+    /**
+     * Merges two files into an output file, each in the format given by its extension, see {@link DocumentFormat#of(Path)}.
+     *
+     * @param base    the path of the base document
+     * @param overlay the path of the overlay document
+     * @param output  the path to write the merged document to
+     * @throws IOException              if reading or writing fails
+     * @throws IllegalArgumentException if the format of a file is not known
+     */
+    public void merge(Path base, Path overlay, Path output) throws IOException {
+        DocumentFormat baseFormat = DocumentFormat.of(base);
+        DocumentFormat overlayFormat = DocumentFormat.of(overlay);
+        DocumentFormat outputFormat = DocumentFormat.of(output);
+        try (InputStream baseStream = open(base); InputStream overlayStream = open(overlay); OutputStream outputStream = Files.newOutputStream(output)) {
+            merge(baseStream, baseFormat, overlayStream, overlayFormat, outputStream, outputFormat);
+        }
+    }
+
+    private InputStream open(Path path) throws IOException {
+        return config.isMemoryMapFiles() ? MergerUtil.openMapped(path) : Files.newInputStream(path);
+    }
+}
@@ -0,0 +1,339 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes and applies the patches of a {@link DeltaFormat}. An instance is used for a single call.
+ * <p>
+ * A patch is computed by walking the base and the merged result together. The result is merged with
+ * structural sharing, so every subtree the overlay did not touch is the very node of the base and is
+ * skipped by identity; only the parts the overlay changed are compared.
+ * <p>
+ * A patch is applied copy-on-write. With structural sharing only the containers on the path of a change
+ * are copied, each at most once per patch; otherwise the base is deep-copied once and changed in place.
+ */
+final class Delta {
+
+    private final Merger merger;
+    private final boolean sharing;
+    private final Set<JsonNode> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param merger  the Merger creating the nodes
+     * @param sharing whether patches and results may share nodes with the trees they are made from
+     */
+    Delta(Merger merger, boolean sharing) {
+        this.merger = merger;
+        this.sharing = sharing;
+    }
+
+    /**
+     * Computes the patch that turns the base into the result.
+     *
+     * @param base   the base JsonNode
+     * @param result the merged JsonNode
+     * @param format the format of the patch
+     * @return the patch
+     * @throws IllegalArgumentException if the change cannot be expressed as a merge patch
+     */
+    JsonNode diff(JsonNode base, JsonNode result, DeltaFormat format) {
+        if (format == DeltaFormat.JSON_PATCH) {
+            ArrayNode operations = merger.getArrayNode();
+            jsonPatch("", base, result, operations);
+            return operations;
+        }
+
+        // A merge patch replaces any target with a value that is not an object
+        if (!result.isObject())
+            return copy(result);
+        ObjectNode patch = mergePatch("", base.isObject() ? (ObjectNode) base : merger.getObjectNode(), (ObjectNode) result);
+        return patch != null ? patch : merger.getObjectNode();
+    }
+
+    /**
+     * Applies a patch to the base.
+     *
+     * @param base   the base JsonNode
+     * @param patch  the patch
+     * @param format the format of the patch
+     * @return the patched JsonNode
+     * @throws IllegalArgumentException if the patch is malformed or does not fit the base
+     */
+    JsonNode apply(JsonNode base, JsonNode patch, DeltaFormat format) {
+        JsonNode target = sharing ? base : merger.copyTree(base);
+        if (format == DeltaFormat.MERGE_PATCH)
+            return applyMergePatch(target, patch);
+
+        if (!patch.isArray())
+            throw new IllegalArgumentException("A JSON Patch must be an array of operations");
+        for (JsonNode operation : patch) {
+            target = applyOperation(target, operation);
+        }
+        return target;
+    }
+
+    /**
+     * Describes the changes of an object, or returns null if there are none.
+     */
+    private ObjectNode mergePatch(String path, ObjectNode base, ObjectNode result) {
+        ObjectNode patch = null;
+        for (Map.Entry<String, JsonNode> entry : base.properties()) {
+            String field = entry.getKey();
+            JsonNode baseVal = entry.getValue();
+            JsonNode resultVal = result.get(field);
+            JsonNode change;
+            if (resultVal == null) { // field removed
+                change = NullNode.getInstance();
+            } else if (resultVal == baseVal) {
+                continue;
+            } else if (baseVal.isObject() && resultVal.isObject()) {
+                change = mergePatch(pointer(path, field), (ObjectNode) baseVal, (ObjectNode) resultVal);
+            } else {
+                change = baseVal.equals(resultVal) ? null : member(pointer(path, field), resultVal);
+            }
+
+            if (change != null) {
+                if (patch == null)
+                    patch = merger.getObjectNode();
+                patch.set(field, change);
+            }
+        }
+
+        for (Map.Entry<String, JsonNode> entry : result.properties()) {
+            if (!base.has(entry.getKey())) { // field added
+                if (patch == null)
+                    patch = merger.getObjectNode();
+                patch.set(entry.getKey(), member(pointer(path, entry.getKey()), entry.getValue()));
+            }
+        }
+        return patch;
+    }
+
+    /**
+     * Returns a value to set in a merge patch, which cannot hold nulls in objects as they mean removal.
+     */
+    private JsonNode member(String path, JsonNode value) {
+        if (value.isNull())
+            throw new IllegalArgumentException(String.format("Cannot set null at '%s' with a merge patch, use a JSON Patch instead", path));
+        if (value.isObject()) {
+            for (Map.Entry<String, JsonNode> entry : value.properties()) {
+                member(pointer(path, entry.getKey()), entry.getValue());
+            }
+        }
+        return copy(value);
+    }
+
+    private void jsonPatch(String path, JsonNode base, JsonNode result, ArrayNode operations) {
+        if (base == result)
+            return;
+
+        if (base.isObject() && result.isObject()) {
+            for (Map.Entry<String, JsonNode> entry : base.properties()) {
+                JsonNode resultVal = result.get(entry.getKey());
+                if (resultVal == null) {
+                    operation(operations, "remove", pointer(path, entry.getKey()), null);
+                } else {
+                    jsonPatch(pointer(path, entry.getKey()), entry.getValue(), resultVal, operations);
+                }
+            }
+            for (Map.Entry<String, JsonNode> entry : result.properties()) {
+                if (!base.has(entry.getKey()))
+                    operation(operations, "add", pointer(path, entry.getKey()), entry.getValue());
+            }
+        } else if (base.isArray() && result.isArray()) {
+            // Elements are compared by position, surplus elements are removed from the end or appended
+            int common = Math.min(base.size(), result.size());
+            for (int i = 0; i < common; i++) {
+                jsonPatch(path + "/" + i, base.get(i), result.get(i), operations);
+            }
+            for (int i = base.size() - 1; i >= common; i--) {
+                operation(operations, "remove", path + "/" + i, null);
+            }
+            for (int i = common; i < result.size(); i++) {
+                operation(operations, "add", path + "/-", result.get(i));
+            }
+        } else if (!base.equals(result)) {
+            operation(operations, "replace", path, result);
+        }
+    }
+
+    private void operation(ArrayNode operations, String op, String path, JsonNode value) {
+        ObjectNode operation = operations.addObject();
+        operation.put("op", op);
+        operation.put("path", path);
+        if (value != null)
+            operation.set("value", copy(value));
+    }
+
+    private JsonNode applyMergePatch(JsonNode target, JsonNode patch) {
+        if (!patch.isObject())
+            return copy(patch);
+
+        ObjectNode result = target != null && target.isObject() ? (ObjectNode) own(target) : newObject();
+        for (Map.Entry<String, JsonNode> entry : patch.properties()) {
+            if (entry.getValue().isNull()) {
+                result.remove(entry.getKey());
+            } else {
+                JsonNode current = result.get(entry.getKey());
+                JsonNode patched = applyMergePatch(current, entry.getValue());
+                if (patched != current)
+                    result.set(entry.getKey(), patched);
+            }
+        }
+        return result;
+    }
+
+    private JsonNode applyOperation(JsonNode target, JsonNode operation) {
+        String op = operation.path("op").asText();
+        JsonPointer path = pointer(operation, "path");
+        switch (op) {
+            case "add":
+                return change(target, path, copy(value(operation)), true);
+            case "remove":
+                return change(target, path, null, false);
+            case "replace":
+                return change(target, path, copy(value(operation)), false);
+            case "move": {
+                JsonPointer from = pointer(operation, "from");
+                if (path.toString().startsWith(from + "/"))
+                    throw new IllegalArgumentException(String.format("Cannot move '%s' into itself", from));
+                JsonNode value = get(target, from);
+                return change(change(target, from, null, false), path, value, true);
+            }
+            case "copy":
+                return change(target, path, merger.copyTree(get(target, pointer(operation, "from"))), true);
+            case "test":
+                if (!get(target, path).equals(value(operation)))
+                    throw new IllegalArgumentException(String.format("Test failed at '%s'", path));
+                return target;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown patch operation '%s'", op));
+        }
+    }
+
+    /**
+     * Adds, replaces or (with a null value) removes the value at the pointer, copying the containers on its path as needed.
+     *
+     * @return the new root
+     */
+    private JsonNode change(JsonNode root, JsonPointer path, JsonNode value, boolean insert) {
+        if (path.matches()) {
+            if (value == null)
+                throw new IllegalArgumentException("Cannot remove the root of a document");
+            return value;
+        }
+        if (!root.isContainerNode())
+            throw new IllegalArgumentException(String.format("No container for '%s'", path));
+
+        root = own(root);
+        JsonNode parent = root;
+        JsonPointer rest = path;
+        while (!rest.tail().matches()) {
+            JsonNode child = parent.isObject() ? parent.get(rest.getMatchingProperty()) : parent.get(rest.getMatchingIndex());
+            if (child == null || !child.isContainerNode())
+                throw new IllegalArgumentException(String.format("No container for '%s'", path));
+
+            JsonNode ownedChild = own(child);
+            if (ownedChild != child) {
+                if (parent.isObject()) {
+                    ((ObjectNode) parent).set(rest.getMatchingProperty(), ownedChild);
+                } else {
+                    ((ArrayNode) parent).set(rest.getMatchingIndex(), ownedChild);
+                }
+            }
+            parent = ownedChild;
+            rest = rest.tail();
+        }
+
+        if (parent.isObject()) {
+            ObjectNode object = (ObjectNode) parent;
+            String field = rest.getMatchingProperty();
+            if (!insert && !object.has(field))
+                throw new IllegalArgumentException(String.format("No value at '%s'", path));
+            if (value == null) {
+                object.remove(field);
+            } else {
+                object.set(field, value);
+            }
+        } else {
+            ArrayNode array = (ArrayNode) parent;
+            int index = insert && "-".equals(rest.getMatchingProperty()) ? array.size() : rest.getMatchingIndex();
+            if (index < 0 || index > (insert ? array.size() : array.size() - 1))
+                throw new IllegalArgumentException(String.format("Array index out of range at '%s'", path));
+            if (value == null) {
+                array.remove(index);
+            } else if (insert) {
+                array.insert(index, value);
+            } else {
+                array.set(index, value);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Returns a container that may be changed in place, copying it the first time it is changed when sharing nodes.
+     */
+    private JsonNode own(JsonNode node) {
+        if (!sharing || owned.contains(node))
+            return node;
+
+        JsonNode copy;
+        if (node.isObject()) {
+            ObjectNode object = merger.getObjectNode(node.size() + 1);
+            object.setAll((ObjectNode) node);
+            copy = object;
+        } else {
+            ArrayNode array = merger.getArrayNode(node.size() + 1);
+            array.addAll((ArrayNode) node);
+            copy = array;
+        }
+        owned.add(copy);
+        return copy;
+    }
+
+    private ObjectNode newObject() {
+        ObjectNode object = merger.getObjectNode();
+        if (sharing)
+            owned.add(object);
+        return object;
+    }
+
+    private JsonNode copy(JsonNode node) {
+        return sharing ? node : merger.copyTree(node);
+    }
+
+    private static JsonNode get(JsonNode root, JsonPointer path) {
+        JsonNode value = root.at(path);
+        if (value.isMissingNode())
+            throw new IllegalArgumentException(String.format("No value at '%s'", path));
+        return value;
+    }
+
+    private static JsonNode value(JsonNode operation) {
+        JsonNode value = operation.get("value");
+        if (value == null)
+            throw new IllegalArgumentException(String.format("Missing value in patch operation %s", operation));
+        return value;
+    }
+
+    private static JsonPointer pointer(JsonNode operation, String name) {
+        JsonNode pointer = operation.get(name);
+        if (pointer == null || !pointer.isTextual())
+            throw new IllegalArgumentException(String.format("Missing %s in patch operation %s", name, operation));
+        return JsonPointer.compile(pointer.textValue());
+    }
+
+    private static String pointer(String path, String field) {
+        return path + "/" + field.replace("~", "~0").replace("/", "~1");
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.pstickney.jmerge;
+
+/**
+ * The formats in which {@link Merger} describes the effect of a merge as a patch to the base.
+ */
+public enum DeltaFormat {
+    /**
+     * A JSON Merge Patch (RFC 7386): an object holding the changed fields, null marking removed ones.
+     * Arrays are always replaced as a whole, and null values cannot be set inside objects.
+     */
+    MERGE_PATCH,
+    /**
+     * A JSON Patch (RFC 6902): an array of add, remove and replace operations addressed by JSON Pointer.
+     */
+    JSON_PATCH
+}
@@ -0,0 +1,97 @@
+package io.github.pstickney.jmerge;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The document formats a {@link CrossFormatMerger} reads and writes, each handled by its own {@link Merger}.
+ */
+public enum DocumentFormat {
+    /**
+     * JSON text, read and written by a {@link JsonMerger}.
+     */
+    JSON(false) {
+        @Override
+        Merger merger(CompiledConfig config) {
+            return new JsonMerger(config);
+        }
+    },
+    /**
+     * YAML text, read and written by a {@link YamlMerger}.
+     */
+    YAML(false) {
+        @Override
+        Merger merger(CompiledConfig config) {
+            return new YamlMerger(config);
+        }
+    },
+    /**
+     * Binary Smile, read and written by a {@link MapperMerger#smile(CompiledConfig) Smile MapperMerger}.
+     */
+    SMILE(true) {
+        @Override
+        Merger merger(CompiledConfig config) {
+            return MapperMerger.smile(config);
+        }
+    },
+    /**
+     * Binary CBOR, read and written by a {@link MapperMerger#cbor(CompiledConfig) CBOR MapperMerger}.
+     */
+    CBOR(true) {
+        @Override
+        Merger merger(CompiledConfig config) {
+            return MapperMerger.cbor(config);
+        }
+    };
+
+    private final boolean binary;
+
+    DocumentFormat(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Whether documents in this format are binary, so they cannot be held in a String.
+     *
+     * @return true for binary formats
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Creates the Merger reading and writing documents in this format.
+     *
+     * @param config the compiled merge configuration
+     * @return the Merger of this format
+     */
+    abstract Merger merger(CompiledConfig config);
+
+    /**
+     * Returns the format of a file from its extension: {@code .json}, {@code .yaml} or {@code .yml},
+     * {@code .smile} or {@code .sml}, and {@code .cbor}.
+     *
+     * @param path the path of the file
+     * @return the DocumentFormat of the file
+     * @throws IllegalArgumentException if the extension is not known
+     */
+    public static DocumentFormat of(Path path) {
+        String file = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = file.lastIndexOf('.');
+        String extension = dot >= 0 ? file.substring(dot + 1) : "";
+        switch (extension) {
+            case "json":
+                return JSON;
+            case "yaml":
+            case "yml":
+                return YAML;
+            case "smile":
+            case "sml":
+                return SMILE;
+            case "cbor":
+                return CBOR;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown document format of '%s'", path));
+        }
+    }
+}
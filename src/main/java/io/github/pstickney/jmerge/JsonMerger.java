@@ -2,8 +2,8 @@ package io.github.pstickney.jmerge;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -37,6 +37,26 @@ public class JsonMerger extends Merger {
      * @param customizer the consumer to customize the mapper
      */
     public JsonMerger(MergeConfig config, Consumer<ObjectMapper> customizer) {
+        this(config.compile(), customizer);
+    }
+
+    /**
+     * Constructs a Merger with the specified compiled merge configuration.
+     *
+     * @param config the compiled merge configuration to apply during merging
+     */
+    public JsonMerger(CompiledConfig config) {
+        this(config, mapper -> {
+        });
+    }
+
+    /**
+     * Constructs a Merger with the specified compiled merge configuration and mapper customizer.
+     *
+     * @param config     the compiled merge configuration to apply during merging
+     * @param customizer the consumer to customize the mapper
+     */
+    public JsonMerger(CompiledConfig config, Consumer<ObjectMapper> customizer) {
         super(config);
         mapper = new ObjectMapper();
 
@@ -45,12 +65,14 @@ public class JsonMerger extends Merger {
     }
 
     /**
-     * Customize the mapper associated with this Merger
+     * Customize the mapper associated with this Merger.
+     * This is not thread-safe and must not be called while the Merger is in use; prefer the constructor customizer.
      *
      * @param customizer the consumer to customize the mapper
      */
     public void customizeMapper(Consumer<ObjectMapper> customizer) {
         customizer.accept(mapper);
+        mapperChanged();
     }
 
     /**
@@ -63,52 +85,64 @@ public class JsonMerger extends Merger {
      */
     @Override
     public String merge(String base, String overlay) throws JsonProcessingException {
-        JsonNode baseNode = mapper.readTree(base);
-        JsonNode overlayNode = mapper.readTree(overlay);
+        ObjectReader reader = getReader();
+        JsonNode baseNode = reader.readTree(base);
+        JsonNode overlayNode = reader.readTree(overlay);
 
         JsonNode node = merge(baseNode, overlayNode);
 
-        ObjectWriter writer = config.getPrettyPrint() ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer();
-        return writer.writeValueAsString(node);
+        return getWriter().writeValueAsString(node);
     }
 
     /**
-     * Merges two objects of type T according to the configured strategies.
+     * Provides a new Jackson {@link ObjectNode} instance for representing JSON objects.
      *
-     * @param base        the base object
-     * @param overlay     the overlay object
-     * @param outputClass the class of the object
-     * @param <T>
-     * @return the merged object
-     * @throws JsonProcessingException if parsing or processing fails
+     * @return a new {@link ObjectNode}
      */
     @Override
-    public <T> T merge(T base, T overlay, Class<T> outputClass) throws JsonProcessingException {
-        String baseString = mapper.writeValueAsString(base);
-        String overlayString = mapper.writeValueAsString(overlay);
-
-        String merged = merge(baseString, overlayString);
+    protected ObjectNode getObjectNode() {
+        return getNodeFactory().objectNode();
+    }
 
-        return mapper.readValue(merged, outputClass);
+    /**
+     * Provides a new Jackson {@link ArrayNode} instance for representing JSON arrays.
+     *
+     * @return a new {@link ArrayNode}
+     */
+    @Override
+    protected ArrayNode getArrayNode() {
+        return getNodeFactory().arrayNode();
     }
 
     /**
-     * Provides a new Jackson {@link ObjectNode} instance for representing JSON objects.
+     * Provides a new ObjectNode with room for the given number of fields.
      *
+     * @param expectedSize the expected number of fields
      * @return a new {@link ObjectNode}
      */
     @Override
-    protected ObjectNode getObjectNode() {
-        return mapper.createObjectNode();
+    protected ObjectNode getObjectNode(int expectedSize) {
+        return presizedObjectNode(expectedSize);
     }
 
     /**
-     * Provides a new Jackson {@link ArrayNode} instance for representing JSON arrays.
+     * Provides a new ArrayNode with room for the given number of elements.
      *
+     * @param expectedSize the expected number of elements
      * @return a new {@link ArrayNode}
      */
     @Override
-    protected ArrayNode getArrayNode() {
-        return mapper.createArrayNode();
+    protected ArrayNode getArrayNode(int expectedSize) {
+        return presizedArrayNode(expectedSize);
+    }
+
+    /**
+     * Provides the mapper used to read and write JSON documents.
+     *
+     * @return the ObjectMapper of this Merger
+     */
+    @Override
+    protected ObjectMapper getMapper() {
+        return mapper;
     }
 }
@@ -0,0 +1,104 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.pstickney.jmerge.util.MergerUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled accessor for the {@link MergeRule#getKeyField() keyField} of a keyed array merge.
+ * The dot-separated key path is parsed once, dots inside double quotes being part of the field name,
+ * and the key is returned as a typed value so that array elements can be matched with a hash lookup.
+ * <p>
+ * Keys compare by value and type: strings with strings, integral numbers numerically regardless of
+ * their width, floating point numbers numerically, booleans with booleans, and nulls with nulls.
+ */
+final class KeyExtractor {
+
+    private static final Object NULL_KEY = new Object();
+
+    private final String[] segments;
+
+    private KeyExtractor(String[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Parses a key path such as {@code metadata.name} or {@code labels."app.kubernetes.io/name"}.
+     *
+     * @param keyField the key path to compile
+     * @return the compiled KeyExtractor
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    static KeyExtractor compile(String keyField) {
+        List<String> segments = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < keyField.length(); i++) {
+            char c = keyField.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '.' && !quoted) {
+                segments.add(segment.toString());
+                segment.setLength(0);
+            } else {
+                segment.append(c);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException(String.format("Unclosed quote in keyField '%s'", keyField));
+        segments.add(segment.toString());
+        return new KeyExtractor(segments.toArray(new String[0]));
+    }
+
+    /**
+     * Extracts the key of an array element.
+     *
+     * @param node the array element
+     * @return the typed key if the key path leads to a value node, otherwise null
+     */
+    Object extract(JsonNode node) {
+        JsonNode current = node;
+        for (String segment : segments) {
+            if (current == null)
+                return null;
+            current = current.get(segment);
+        }
+        if (current == null || !current.isValueNode())
+            return null;
+
+        if (current.isTextual())
+            return current.textValue();
+        if (current.isIntegralNumber())
+            return current.canConvertToLong() ? (Object) current.longValue() : current.bigIntegerValue();
+        if (current.isBigDecimal())
+            return current.decimalValue().stripTrailingZeros();
+        if (current.isNumber())
+            return current.doubleValue();
+        if (current.isBoolean())
+            return current.booleanValue();
+        if (current.isNull())
+            return NULL_KEY;
+        return current;
+    }
+
+    /**
+     * Indexes the elements of a base array by their key. Elements without a key are left out,
+     * and of several elements with the same key the last one is kept.
+     *
+     * @param array the base array
+     * @return the elements of the array by key
+     */
+    Map<Object, JsonNode> index(JsonNode array) {
+        Map<Object, JsonNode> index = new HashMap<>(MergerUtil.mapCapacity(array.size()));
+        for (JsonNode item : array) {
+            Object key = extract(item);
+            if (key != null)
+                index.put(key, item);
+        }
+        return index;
+    }
+}
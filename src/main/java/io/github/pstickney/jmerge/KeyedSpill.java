@@ -0,0 +1,125 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the base elements of a keyed array merge by their key, with a bounded number of bytes of them in memory.
+ * <p>
+ * Elements are kept in memory while their encoded sizes add up to no more than the budget; further elements
+ * are encoded with the mapper and appended to a temporary file, and only their key, offset and length stay in memory. Elements are looked
+ * up by key in any order, so the caller can emit the result in overlay order, as the in-memory merge does,
+ * and each spilled element is read back with a single positional read. The file is deleted on close.
+ */
+final class KeyedSpill implements Closeable {
+
+    private final ObjectMapper mapper;
+    private final long budget;
+    private final Map<Object, JsonNode> memory = new HashMap<>();
+    private final Map<Object, long[]> spilled = new HashMap<>();
+    private Path file;
+    private FileChannel channel;
+    private OutputStream output;
+    private long size;
+    private long memorySize;
+    private boolean dirty;
+
+    /**
+     * @param mapper the mapper encoding spilled elements
+     * @param budget the total encoded size in bytes of the elements held in memory, or 0 to hold all of them
+     */
+    KeyedSpill(ObjectMapper mapper, long budget) {
+        this.mapper = mapper;
+        this.budget = budget;
+    }
+
+    /**
+     * Adds an element, replacing an earlier element with the same key. A replaced element still
+     * counts against the budget, so the budget bounds every element ever held in memory.
+     *
+     * @param key         the key of the element
+     * @param item        the element
+     * @param encodedSize the size of the element in bytes as it was read
+     * @throws IOException if the element cannot be spilled
+     */
+    void put(Object key, JsonNode item, long encodedSize) throws IOException {
+        if (memory.remove(key) == null)
+            spilled.remove(key);
+
+        if (budget <= 0 || memorySize + encodedSize <= budget) {
+            memory.put(key, item);
+            memorySize += encodedSize;
+            return;
+        }
+
+        if (channel == null) {
+            file = Files.createTempFile("jmerge-", ".spill");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            output = new BufferedOutputStream(Channels.newOutputStream(channel));
+        }
+        byte[] bytes = mapper.writeValueAsBytes(item);
+        output.write(bytes);
+        spilled.put(key, new long[]{size, bytes.length});
+        size += bytes.length;
+        dirty = true;
+    }
+
+    /**
+     * Removes and returns the element with the given key.
+     *
+     * @param key the key of the element
+     * @return the element, or null if there is none
+     * @throws IOException if a spilled element cannot be read
+     */
+    JsonNode remove(Object key) throws IOException {
+        JsonNode item = memory.remove(key);
+        if (item != null)
+            return item;
+
+        long[] entry = spilled.remove(key);
+        if (entry == null)
+            return null;
+
+        if (dirty) {
+            output.flush();
+            dirty = false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry[0] + buffer.position()) < 0)
+                throw new IOException(String.format("Unexpected end of spill file %s", file));
+        }
+        return mapper.readTree(buffer.array());
+    }
+
+    /**
+     * Whether any element was written to the temporary file.
+     *
+     * @return true if elements were spilled
+     */
+    boolean isSpilled() {
+        return channel != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            // Closing the channel deletes the file
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.pstickney.jmerge.exception.StrategyException;
+import io.github.pstickney.jmerge.util.MergerUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges a base with any number of overlays in one recursive pass. Every node is resolved across
+ * all layers at once, so the intermediate results of folding the overlays pairwise are never built.
+ * <p>
+ * The result is identical to {@code merge(merge(merge(base, o1), o2), ...)}. At each node the layers
+ * are scanned for the last one that resets the value (a type change or a REPLACE strategy); only the
+ * layers from there on contribute, and object fields and keyed array elements are grouped into
+ * per-child layer lists that are resolved recursively.
+ */
+final class LayeredMerge {
+
+    private final Merger merger;
+    private final CompiledConfig config;
+    private final MergeContext context;
+
+    LayeredMerge(Merger merger, CompiledConfig config, MergeContext context) {
+        this.merger = merger;
+        this.config = config;
+        this.context = context;
+    }
+
+    /**
+     * Merges the layers of a single node, the first layer being the base.
+     *
+     * @param cursor the position in the rule index matching the current path
+     * @param layers the values of this node in every layer that has it, in merge order
+     * @return the merged JsonNode
+     */
+    JsonNode merge(RuleIndex.Node cursor, List<JsonNode> layers) {
+        int start = resetIndex(cursor, layers);
+        if (start == layers.size() - 1)
+            return context.copy(layers.get(start));
+
+        List<JsonNode> active = layers.subList(start, layers.size());
+        JsonNode first = active.get(0);
+        if (first.isObject()) {
+            return mergeObjects(cursor, active);
+        }
+
+        MergeRule rule = cursor.getRule();
+        Strategy strategy = rule != null ? rule.getStrategy() : config.getArrayStrategy();
+        if (strategy == Strategy.APPEND) {
+            ArrayNode result = merger.getArrayNode(totalSize(active));
+            for (JsonNode layer : active) {
+                for (JsonNode item : layer) {
+                    result.add(context.copy(item));
+                }
+            }
+            return result;
+        } else if (strategy == Strategy.UNION) {
+            ArrayUnion union = new ArrayUnion(cursor.getKeyExtractor());
+            ArrayNode result = merger.getArrayNode(totalSize(active));
+            for (JsonNode layer : active) {
+                for (JsonNode item : layer) {
+                    if (union.add(item))
+                        result.add(context.copy(item));
+                }
+            }
+            return result;
+        } else if (strategy == Strategy.MERGE) {
+            return mergeKeyedArrays(cursor, rule, active);
+        }
+        return fold(cursor, active);
+    }
+
+    /**
+     * Finds the last layer whose value is not merged with the value before it, i.e. where folding
+     * the layers pairwise would simply take (a copy of) that layer.
+     */
+    private int resetIndex(RuleIndex.Node cursor, List<JsonNode> layers) {
+        MergeRule rule = cursor.getRule();
+        int start = 0;
+        JsonNode running = layers.get(0);
+        for (int i = 1; i < layers.size(); i++) {
+            JsonNode layer = layers.get(i);
+            if (running.isObject() && layer.isObject()) {
+                Strategy strategy = rule != null ? rule.getStrategy() : config.getObjectStrategy();
+                if (strategy == Strategy.REPLACE) {
+                    start = i;
+                } else if (strategy != Strategy.MERGE) {
+                    String path = context.path();
+                    throw new StrategyException(String.format("Invalid strategy '%s' for object merge at path '%s'", strategy, path.isEmpty() ? "." : path));
+                }
+            } else if (running.isArray() && layer.isArray()) {
+                Strategy strategy = rule != null ? rule.getStrategy() : config.getArrayStrategy();
+                if (strategy == Strategy.REPLACE)
+                    start = i;
+                else if (strategy == Strategy.MERGE)
+                    checkKeyedRule(rule);
+            } else {
+                start = i;
+                running = layer;
+            }
+        }
+        return start;
+    }
+
+    private ObjectNode mergeObjects(RuleIndex.Node cursor, List<JsonNode> layers) {
+        // Simulate the field order and presence of the pairwise fold, collecting each field's layers
+        Map<String, List<JsonNode>> fields = new LinkedHashMap<>(MergerUtil.mapCapacity(layers.get(0).size()));
+        for (Map.Entry<String, JsonNode> entry : layers.get(0).properties()) {
+            fields.put(entry.getKey(), singleton(entry.getValue()));
+        }
+
+        for (int i = 1; i < layers.size(); i++) {
+            JsonNode overlay = layers.get(i);
+            for (Iterator<Map.Entry<String, List<JsonNode>>> it = fields.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, List<JsonNode>> entry = it.next();
+                JsonNode overlayVal = overlay.get(entry.getKey());
+                Strategy childStrategy = childStrategy(cursor.child(entry.getKey()));
+
+                if (overlayVal != null) { // Both exist
+                    if (childStrategy == Strategy.REPLACE) {
+                        entry.setValue(singleton(overlayVal));
+                    } else if (childStrategy == Strategy.MERGE || childStrategy == Strategy.UNION) {
+                        entry.getValue().add(overlayVal);
+                    }
+                } else if (childStrategy == Strategy.REPLACE) { // field removed
+                    it.remove();
+                }
+            }
+            for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+                if (!fields.containsKey(entry.getKey())) // field added
+                    fields.put(entry.getKey(), singleton(entry.getValue()));
+            }
+        }
+
+        ObjectNode result = merger.getObjectNode(fields.size());
+        for (Map.Entry<String, List<JsonNode>> entry : fields.entrySet()) {
+            String field = entry.getKey();
+            context.push(field);
+            result.set(field, merge(cursor.child(field), entry.getValue()));
+            context.pop();
+        }
+        return result;
+    }
+
+    private void checkKeyedRule(MergeRule rule) {
+        if (rule == null)
+            throw new StrategyException(String.format("Missing array merge rule for '%s'", context.path()));
+
+        if (rule.getKeyField() == null)
+            throw new StrategyException(String.format("Missing keyField in array merge rule for '%s'", context.path()));
+    }
+
+    private ArrayNode mergeKeyedArrays(RuleIndex.Node cursor, MergeRule rule, List<JsonNode> layers) {
+        // Each element of the running result is represented by the layers it is merged from.
+        // Its key is the key of its last layer, which is the overlay element it was matched on.
+        KeyExtractor keys = cursor.getKeyExtractor();
+        List<List<JsonNode>> elements = new ArrayList<>();
+        for (JsonNode item : layers.get(0)) {
+            elements.add(singleton(item));
+        }
+
+        for (int i = 1; i < layers.size(); i++) {
+            Map<Object, List<JsonNode>> baseMap = new HashMap<>(MergerUtil.mapCapacity(elements.size()));
+            for (List<JsonNode> element : elements) {
+                Object key = keys.extract(element.get(element.size() - 1));
+                if (key != null)
+                    baseMap.put(key, element);
+            }
+
+            List<List<JsonNode>> next = new ArrayList<>(layers.get(i).size());
+            for (JsonNode item : layers.get(i)) {
+                Object key = keys.extract(item);
+                List<JsonNode> element = key != null ? baseMap.remove(key) : null;
+                if (element != null) {
+                    element.add(item);
+                    next.add(element);
+                } else {
+                    next.add(singleton(item));
+                }
+            }
+            elements = next;
+        }
+
+        ArrayNode result = merger.getArrayNode(elements.size());
+        for (List<JsonNode> element : elements) {
+            result.add(merge(cursor, element));
+        }
+        return result;
+    }
+
+    /**
+     * Folds the layers pairwise, used for strategies without a dedicated single-pass implementation.
+     */
+    private JsonNode fold(RuleIndex.Node cursor, List<JsonNode> layers) {
+        JsonNode result = layers.get(0);
+        for (int i = 1; i < layers.size(); i++) {
+            result = merger.mergeNodes(context, cursor, result, layers.get(i));
+        }
+        return result;
+    }
+
+    private static int totalSize(List<JsonNode> layers) {
+        int size = 0;
+        for (JsonNode layer : layers) {
+            size += layer.size();
+        }
+        return size;
+    }
+
+    private Strategy childStrategy(RuleIndex.Node childCursor) {
+        MergeRule childRule = childCursor.getRule();
+        return childRule != null ? childRule.getStrategy() : config.getObjectStrategy();
+    }
+
+    private static List<JsonNode> singleton(JsonNode node) {
+        List<JsonNode> list = new ArrayList<>(2);
+        list.add(node);
+        return list;
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import java.util.function.Consumer;
+
+/**
+ * A Merger for any format Jackson has an {@link ObjectMapper} or {@link JsonFactory} for, such as
+ * Smile, CBOR, Ion or TOML. Documents are read and written by the given mapper, so they are merged in
+ * their own format without being converted to JSON text first.
+ * <p>
+ * Binary formats cannot be read from or written to Strings; use the {@code byte[]}, stream or file
+ * methods for them, where {@link #merge(String, String)} throws an UnsupportedOperationException.
+ * {@link #smile(MergeConfig)} and {@link #cbor(MergeConfig)} create Mergers for the two binary
+ * formats Jackson ships, given their optional dependencies are on the classpath.
+ */
+public class MapperMerger extends Merger {
+
+    protected ObjectMapper mapper;
+
+    /**
+     * Constructs a Merger with the default merge configuration for the format of the given factory.
+     *
+     * @param factory the factory of the format
+     */
+    public MapperMerger(JsonFactory factory) {
+        this(new MergeConfig(), new ObjectMapper(factory));
+    }
+
+    /**
+     * Constructs a Merger with the specified merge configuration for the format of the given factory.
+     *
+     * @param config  the merge configuration to apply during merging
+     * @param factory the factory of the format
+     */
+    public MapperMerger(MergeConfig config, JsonFactory factory) {
+        this(config, new ObjectMapper(factory));
+    }
+
+    /**
+     * Constructs a Merger with the specified merge configuration that reads and writes with the given mapper.
+     * The mapper is used as it is and must not be reconfigured while the Merger is in use.
+     *
+     * @param config the merge configuration to apply during merging
+     * @param mapper the mapper of the format
+     */
+    public MapperMerger(MergeConfig config, ObjectMapper mapper) {
+        this(config.compile(), mapper);
+    }
+
+    /**
+     * Constructs a Merger with the specified compiled merge configuration that reads and writes with the given mapper.
+     * The mapper is used as it is and must not be reconfigured while the Merger is in use.
+     *
+     * @param config the compiled merge configuration to apply during merging
+     * @param mapper the mapper of the format
+     */
+    public MapperMerger(CompiledConfig config, ObjectMapper mapper) {
+        super(config);
+        this.mapper = mapper;
+    }
+
+    /**
+     * Creates a Merger for Smile, the binary encoding of JSON.
+     * Requires {@code com.fasterxml.jackson.dataformat:jackson-dataformat-smile} on the classpath.
+     *
+     * @param config the merge configuration to apply during merging
+     * @return the Smile MapperMerger
+     */
+    public static MapperMerger smile(MergeConfig config) {
+        return smile(config.compile());
+    }
+
+    /**
+     * Creates a Merger for Smile with the specified compiled merge configuration.
+     * Requires {@code com.fasterxml.jackson.dataformat:jackson-dataformat-smile} on the classpath.
+     *
+     * @param config the compiled merge configuration to apply during merging
+     * @return the Smile MapperMerger
+     */
+    public static MapperMerger smile(CompiledConfig config) {
+        return new MapperMerger(config, BinaryMappers.smile());
+    }
+
+    /**
+     * Creates a Merger for CBOR, the Concise Binary Object Representation.
+     * Requires {@code com.fasterxml.jackson.dataformat:jackson-dataformat-cbor} on the classpath.
+     *
+     * @param config the merge configuration to apply during merging
+     * @return the CBOR MapperMerger
+     */
+    public static MapperMerger cbor(MergeConfig config) {
+        return cbor(config.compile());
+    }
+
+    /**
+     * Creates a Merger for CBOR with the specified compiled merge configuration.
+     * Requires {@code com.fasterxml.jackson.dataformat:jackson-dataformat-cbor} on the classpath.
+     *
+     * @param config the compiled merge configuration to apply during merging
+     * @return the CBOR MapperMerger
+     */
+    public static MapperMerger cbor(CompiledConfig config) {
+        return new MapperMerger(config, BinaryMappers.cbor());
+    }
+
+    /**
+     * Customize the mapper associated with this Merger.
+     * This is not thread-safe and must not be called while the Merger is in use.
+     *
+     * @param customizer the consumer to customize the mapper
+     */
+    public void customizeMapper(Consumer<ObjectMapper> customizer) {
+        customizer.accept(mapper);
+        mapperChanged();
+    }
+
+    /**
+     * Merges two documents given as strings and returns the merged result as a string.
+     *
+     * @param base    the base document
+     * @param overlay the overlay document to merge into the base
+     * @return the merged document as a string
+     * @throws JsonProcessingException       if the input strings cannot be parsed
+     * @throws UnsupportedOperationException if the format is binary
+     */
+    @Override
+    public String merge(String base, String overlay) throws JsonProcessingException {
+        ObjectReader reader = getReader();
+        JsonNode baseNode = reader.readTree(base);
+        JsonNode overlayNode = reader.readTree(overlay);
+
+        JsonNode node = merge(baseNode, overlayNode);
+
+        return getWriter().writeValueAsString(node);
+    }
+
+    /**
+     * Provides a new Jackson {@link ObjectNode} instance from the node factory of this Merger.
+     *
+     * @return a new {@link ObjectNode}
+     */
+    @Override
+    protected ObjectNode getObjectNode() {
+        return getNodeFactory().objectNode();
+    }
+
+    /**
+     * Provides a new Jackson {@link ArrayNode} instance from the node factory of this Merger.
+     *
+     * @return a new {@link ArrayNode}
+     */
+    @Override
+    protected ArrayNode getArrayNode() {
+        return getNodeFactory().arrayNode();
+    }
+
+    /**
+     * Provides a new ObjectNode with room for the given number of fields.
+     *
+     * @param expectedSize the expected number of fields
+     * @return a new {@link ObjectNode}
+     */
+    @Override
+    protected ObjectNode getObjectNode(int expectedSize) {
+        return presizedObjectNode(expectedSize);
+    }
+
+    /**
+     * Provides a new ArrayNode with room for the given number of elements.
+     *
+     * @param expectedSize the expected number of elements
+     * @return a new {@link ArrayNode}
+     */
+    @Override
+    protected ArrayNode getArrayNode(int expectedSize) {
+        return presizedArrayNode(expectedSize);
+    }
+
+    /**
+     * Provides the mapper used to read and write documents.
+     *
+     * @return the ObjectMapper of this Merger
+     */
+    @Override
+    protected ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Creates the mappers of the optional binary formats, so that their classes are only loaded
+     * once one of them is used and MapperMerger works without them on the classpath.
+     */
+    private static final class BinaryMappers {
+
+        static ObjectMapper smile() {
+            return new SmileMapper();
+        }
+
+        static ObjectMapper cbor() {
+            return new CBORMapper();
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package io.github.pstickney.jmerge;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.github.pstickney.jmerge.exception.ConfigException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +12,7 @@ import lombok.NoArgsConstructor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 @Data
 @Builder
@@ -26,6 +30,21 @@ public class MergeConfig {
     private Strategy objectStrategy = Strategy.MERGE;
     @Builder.Default
     private List<MergeRule> rules = new ArrayList<>();
+    @Builder.Default
+    private Boolean structuralSharing = Boolean.FALSE;
+    @Builder.Default
+    private Boolean parallel = Boolean.FALSE;
+    @Builder.Default
+    private Integer parallelThreshold = 1024;
+    @JsonIgnore
+    private transient ForkJoinPool parallelPool;
+    @Builder.Default
+    private Boolean memoryMapFiles = Boolean.FALSE;
+    private Long spillBudget;
+    @JsonIgnore
+    private transient MergeListener listener;
+    @JsonIgnore
+    private transient JsonNodeFactory nodeFactory;
 
     /**
      * Adds a rule with the default MERGE strategy for the specified path and key field.
@@ -63,7 +82,19 @@ public class MergeConfig {
     }
 
     /**
-     * Finds a merge rule that matches the specified path.
+     * Validates this configuration and compiles it into an immutable snapshot.
+     * Mergers compile their configuration when they are constructed.
+     *
+     * @return the CompiledConfig
+     * @throws ConfigException if the configuration is invalid
+     */
+    public CompiledConfig compile() {
+        return CompiledConfig.of(this);
+    }
+
+    /**
+     * Finds a merge rule whose path equals the specified path, without expanding wildcards.
+     * This scans the rule list on every call; the merge engine itself uses the {@link RuleIndex} of a {@link CompiledConfig}.
      *
      * @param path the JSON path to look up
      * @return the matching MergeRule if found, otherwise null
@@ -0,0 +1,233 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Per-call state of a single merge. Carries the compiled rules and copy mode, and tracks
+ * the field names leading to the node currently being merged on a reusable stack, so a
+ * path string is only built when one is needed, e.g. for an error message.
+ * <p>
+ * A context belongs to one thread. Parallel merges hand each forked task its own copy via {@link #fork(String)}.
+ */
+class MergeContext {
+
+    private final Merger merger;
+    private final RuleIndex rules;
+    private final boolean structuralSharing;
+    private final boolean idempotent;
+    private final MergeListener listener;
+    private final boolean listening;
+    private ForkJoinPool pool;
+    private int parallelThreshold;
+    private Map<JsonNode, Map<Object, JsonNode>> keyIndexes = Collections.emptyMap();
+    private String[] segments = new String[16];
+    private int depth;
+    private int elements;
+
+    MergeContext(Merger merger) {
+        this(merger, merger.getConfig().isStructuralSharing());
+    }
+
+    MergeContext(Merger merger, boolean structuralSharing) {
+        CompiledConfig config = merger.getConfig();
+        this.merger = merger;
+        this.rules = config.getRuleIndex();
+        this.structuralSharing = structuralSharing;
+        this.idempotent = config.isIdempotent();
+        this.listener = config.getListener();
+        this.listening = listener != MergeListener.NONE;
+    }
+
+    private MergeContext(MergeContext parent) {
+        this.merger = parent.merger;
+        this.rules = parent.rules;
+        this.structuralSharing = parent.structuralSharing;
+        this.idempotent = parent.idempotent;
+        this.listener = parent.listener;
+        this.listening = parent.listening;
+        this.pool = parent.pool;
+        this.parallelThreshold = parent.parallelThreshold;
+        this.keyIndexes = parent.keyIndexes;
+        this.segments = Arrays.copyOf(parent.segments, Math.max(parent.segments.length, parent.depth + 1));
+        this.depth = parent.depth;
+        this.elements = parent.elements;
+    }
+
+    /**
+     * Lets containers with at least the given number of children be merged as fork-join tasks.
+     * Only valid for merges that run inside the given pool.
+     *
+     * @param pool      the pool the merge runs in
+     * @param threshold the minimum number of fields or elements to merge in parallel
+     */
+    void enableParallelism(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.parallelThreshold = Math.max(threshold, 1);
+    }
+
+    /**
+     * Supplies precomputed key indexes of base arrays, as built by {@link PreparedBase}.
+     * The map is only read, so it may be shared by concurrent merges.
+     *
+     * @param keyIndexes the key indexes by base array identity
+     */
+    void useKeyIndexes(Map<JsonNode, Map<Object, JsonNode>> keyIndexes) {
+        this.keyIndexes = keyIndexes;
+    }
+
+    /**
+     * Returns the elements of a base array by key, from the precomputed indexes if the array has one.
+     * The returned map must not be modified.
+     *
+     * @param keys  the key extractor of the array's merge rule
+     * @param array the base array
+     * @return the elements of the array by key
+     */
+    Map<Object, JsonNode> keyIndex(KeyExtractor keys, JsonNode array) {
+        Map<Object, JsonNode> index = keyIndexes.get(array);
+        return index != null ? index : keys.index(array);
+    }
+
+    /**
+     * Whether a container with the given number of children should be merged in parallel.
+     *
+     * @param size the number of fields or elements involved
+     * @return true if its children should be merged as fork-join tasks
+     */
+    boolean isParallel(int size) {
+        return pool != null && size >= parallelThreshold;
+    }
+
+    /**
+     * Creates an independent copy of this context for a forked task, positioned at the given child field.
+     *
+     * @param field the child field the task merges, or null for an array element
+     * @return the forked MergeContext
+     */
+    MergeContext fork(String field) {
+        MergeContext forked = new MergeContext(this);
+        if (field != null) {
+            forked.push(field);
+        } else {
+            forked.enterElement();
+        }
+        return forked;
+    }
+
+    RuleIndex getRules() {
+        return rules;
+    }
+
+    /**
+     * Whether untouched subtrees are shared by reference with the inputs instead of deep-copied.
+     *
+     * @return true if structural sharing is enabled
+     */
+    boolean isStructuralSharing() {
+        return structuralSharing;
+    }
+
+    /**
+     * Whether merging any subtree with an equal subtree yields that same subtree, so the
+     * merge can be skipped. Appending or key-merging arrays anywhere makes this false.
+     *
+     * @return true if equal inputs may short-circuit
+     */
+    boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * Whether a listener other than {@link MergeListener#NONE} receives events, so
+     * instrumentation that costs anything can be skipped without one.
+     *
+     * @return true if events should be reported
+     */
+    boolean isListening() {
+        return listening;
+    }
+
+    MergeListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Returns the node itself when structural sharing is enabled, otherwise a deep copy of it.
+     * The copy is built from the containers of the Merger, each sized for the container it copies.
+     *
+     * @param node the node to place in the result
+     * @param <T>  the node type
+     * @return the node or its copy
+     */
+    <T extends JsonNode> T copy(T node) {
+        if (structuralSharing)
+            return node;
+        if (listening && node.isContainerNode())
+            listener.nodeCopied(path(), node);
+        return merger.copyTree(node);
+    }
+
+    /**
+     * Whether the current position is the root value itself, rather than one of its fields or,
+     * as array elements share the path of their array, an element of a root array.
+     *
+     * @return true at the root
+     */
+    boolean isRoot() {
+        return depth == 0 && elements == 0;
+    }
+
+    /**
+     * Descends into an element of the current array, which keeps the path of the array.
+     */
+    void enterElement() {
+        elements++;
+    }
+
+    /**
+     * Returns from an element to its array.
+     */
+    void leaveElement() {
+        elements--;
+    }
+
+    /**
+     * Descends into the given field.
+     *
+     * @param field the field name
+     */
+    void push(String field) {
+        if (depth == segments.length)
+            segments = Arrays.copyOf(segments, depth * 2);
+        segments[depth++] = field;
+    }
+
+    /**
+     * Returns to the parent of the current field.
+     */
+    void pop() {
+        segments[--depth] = null;
+    }
+
+    /**
+     * Materializes the current position as a dot-separated path, the root being the empty string.
+     *
+     * @return the current path
+     */
+    String path() {
+        if (depth == 0)
+            return "";
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (builder.length() > 0)
+                builder.append('.');
+            builder.append(segments[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Value;
+
+/**
+ * The result of a merge together with the patch that turns the base into it, see
+ * {@link Merger#mergeWithDelta(JsonNode, JsonNode, DeltaFormat)}.
+ */
+@Value
+public class MergeDelta {
+    JsonNode result;
+    JsonNode patch;
+    DeltaFormat format;
+}
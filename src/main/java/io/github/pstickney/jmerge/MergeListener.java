@@ -0,0 +1,68 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Receives events from the merge engine, to see where merge time goes. Set a listener with
+ * {@link MergeConfig#setListener(MergeListener)}; without one the engine skips all instrumentation.
+ * {@link MergeMetrics} is a listener that aggregates the events into counters.
+ * <p>
+ * Paths are dot-separated as in {@link MergeRule#getPath()}, the root being the empty string, and
+ * array elements report the path of their array. The events cover tree merges and everything built
+ * on them; streaming and layered merges report the parts they merge as trees.
+ * <p>
+ * With {@link MergeConfig#getParallel() parallel} merging, events arrive from several threads at once,
+ * so implementations must be thread-safe. Every method does nothing by default.
+ */
+public interface MergeListener {
+
+    /**
+     * The listener that ignores all events.
+     */
+    MergeListener NONE = new MergeListener() {
+    };
+
+    /**
+     * A pair of base and overlay nodes is being merged.
+     */
+    default void nodeVisited() {
+    }
+
+    /**
+     * A subtree is deep-copied into the result. Not reported with structural sharing, which copies nothing.
+     *
+     * @param path the path of the subtree
+     * @param node the subtree being copied
+     */
+    default void nodeCopied(String path, JsonNode node) {
+    }
+
+    /**
+     * A rule decides how a node is merged.
+     *
+     * @param path the path being merged
+     * @param rule the rule applied
+     */
+    default void ruleMatched(String path, MergeRule rule) {
+    }
+
+    /**
+     * Two arrays are merged.
+     *
+     * @param path        the path of the arrays
+     * @param strategy    the strategy they are merged with
+     * @param baseSize    the number of elements in the base array
+     * @param overlaySize the number of elements in the overlay array
+     */
+    default void arrayMerged(String path, Strategy strategy, int baseSize, int overlaySize) {
+    }
+
+    /**
+     * A field of the root object has been merged, including everything below it.
+     *
+     * @param field the field name
+     * @param nanos the time spent on the field in nanoseconds
+     */
+    default void topLevelFieldMerged(String field, long nanos) {
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link MergeListener} that aggregates merge events into thread-safe counters, to be scraped
+ * by a metrics system through {@link #snapshot()}. One instance may be shared by any number of
+ * Mergers and threads.
+ * <p>
+ * Counters are exported with these names, the root path being named {@code .}:
+ * <ul>
+ *     <li>{@code nodes.visited} and {@code nodes.copied}</li>
+ *     <li>{@code copies.<field>}, the subtrees copied below each field of the root object</li>
+ *     <li>{@code rules.<path>}, how often the rule for each path was applied</li>
+ *     <li>{@code arrays.<strategy>.merges}, {@code arrays.<strategy>.elements} and {@code arrays.<strategy>.max},
+ *     the number of array merges, the elements of both sides, and the largest side seen</li>
+ *     <li>{@code time.<field>.nanos} and {@code time.<field>.count}, the time spent per field of the root object</li>
+ * </ul>
+ */
+public class MergeMetrics implements MergeListener {
+
+    private final LongAdder nodesVisited = new LongAdder();
+    private final LongAdder nodesCopied = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> copies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> ruleHits = new ConcurrentHashMap<>();
+    private final Map<Strategy, LongAdder> arrayMerges = new EnumMap<>(Strategy.class);
+    private final Map<Strategy, LongAdder> arrayElements = new EnumMap<>(Strategy.class);
+    private final Map<Strategy, LongAccumulator> arrayMax = new EnumMap<>(Strategy.class);
+    private final ConcurrentMap<String, LongAdder> fieldNanos = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> fieldCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a MergeMetrics with all counters at zero.
+     */
+    public MergeMetrics() {
+        for (Strategy strategy : Strategy.values()) {
+            arrayMerges.put(strategy, new LongAdder());
+            arrayElements.put(strategy, new LongAdder());
+            arrayMax.put(strategy, new LongAccumulator(Math::max, 0));
+        }
+    }
+
+    @Override
+    public void nodeVisited() {
+        nodesVisited.increment();
+    }
+
+    @Override
+    public void nodeCopied(String path, JsonNode node) {
+        nodesCopied.increment();
+        int dot = path.indexOf('.');
+        counter(copies, name(dot < 0 ? path : path.substring(0, dot))).increment();
+    }
+
+    @Override
+    public void ruleMatched(String path, MergeRule rule) {
+        counter(ruleHits, name(rule.getPath())).increment();
+    }
+
+    @Override
+    public void arrayMerged(String path, Strategy strategy, int baseSize, int overlaySize) {
+        arrayMerges.get(strategy).increment();
+        arrayElements.get(strategy).add(baseSize + overlaySize);
+        arrayMax.get(strategy).accumulate(Math.max(baseSize, overlaySize));
+    }
+
+    @Override
+    public void topLevelFieldMerged(String field, long nanos) {
+        counter(fieldNanos, field).add(nanos);
+        counter(fieldCounts, field).increment();
+    }
+
+    /**
+     * Returns the number of node pairs merged.
+     *
+     * @return the nodes visited
+     */
+    public long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    /**
+     * Returns the number of subtrees deep-copied into results.
+     *
+     * @return the nodes copied
+     */
+    public long getNodesCopied() {
+        return nodesCopied.sum();
+    }
+
+    /**
+     * Returns the current value of every counter by its exported name, sorted by name.
+     *
+     * @return the counter values
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        snapshot.put("nodes.visited", nodesVisited.sum());
+        snapshot.put("nodes.copied", nodesCopied.sum());
+        copies.forEach((field, count) -> snapshot.put("copies." + field, count.sum()));
+        ruleHits.forEach((path, count) -> snapshot.put("rules." + path, count.sum()));
+        for (Strategy strategy : Strategy.values()) {
+            snapshot.put("arrays." + strategy + ".merges", arrayMerges.get(strategy).sum());
+            snapshot.put("arrays." + strategy + ".elements", arrayElements.get(strategy).sum());
+            snapshot.put("arrays." + strategy + ".max", arrayMax.get(strategy).get());
+        }
+        fieldNanos.forEach((field, nanos) -> snapshot.put("time." + field + ".nanos", nanos.sum()));
+        fieldCounts.forEach((field, count) -> snapshot.put("time." + field + ".count", count.sum()));
+        return snapshot;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        nodesVisited.reset();
+        nodesCopied.reset();
+        copies.clear();
+        ruleHits.clear();
+        for (Strategy strategy : Strategy.values()) {
+            arrayMerges.get(strategy).reset();
+            arrayElements.get(strategy).reset();
+            arrayMax.get(strategy).reset();
+        }
+        fieldNanos.clear();
+        fieldCounts.clear();
+    }
+
+    private static String name(String path) {
+        return path.isEmpty() ? "." : path;
+    }
+
+    private static LongAdder counter(ConcurrentMap<String, LongAdder> counters, String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+
+/**
+ * A stateful merge of a base with an overlay that changes over time. The session keeps the last
+ * overlay and result, and when the overlay changes only the merged objects on the paths to the
+ * changes are rebuilt; every other subtree of the previous result is reused as is.
+ * <p>
+ * Changes made with {@link #set(JsonPointer, JsonNode)} and {@link #remove(JsonPointer)} copy only
+ * the objects on the changed path, so an update costs time proportional to the depth and width
+ * along that path rather than to the document. A whole new overlay passed to {@link #update(JsonNode)}
+ * is compared with the previous one, skipping subtrees that are the same instance.
+ * Arrays and values that changed are merged again in full.
+ * <p>
+ * Results share unchanged subtrees with earlier results and with the inputs of the session,
+ * so they must be treated as read-only. A session is not thread-safe.
+ */
+public final class MergeSession {
+
+    private final Merger merger;
+    private final JsonNode base;
+    private JsonNode overlay;
+    private JsonNode result;
+
+    MergeSession(Merger merger, JsonNode base, JsonNode overlay) {
+        this.merger = merger;
+        this.base = base;
+        this.overlay = overlay;
+        this.result = merger.merge(context(), base, overlay);
+    }
+
+    /**
+     * Returns the result of merging the base with the current overlay.
+     *
+     * @return the merged JsonNode
+     */
+    public JsonNode getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the current overlay.
+     *
+     * @return the overlay JsonNode
+     */
+    public JsonNode getOverlay() {
+        return overlay;
+    }
+
+    /**
+     * Replaces the overlay with a new version and updates the result. The new overlay is
+     * taken over by the session and must not be modified afterwards.
+     *
+     * @param overlay the new overlay JsonNode
+     * @return the merged JsonNode
+     */
+    public JsonNode update(JsonNode overlay) {
+        MergeContext context = context();
+        JsonNode updated = remerge(context, merger.getConfig().getRuleIndex().root(), base, this.overlay, overlay, result);
+        this.overlay = overlay;
+        this.result = updated;
+        return updated;
+    }
+
+    /**
+     * Sets a value in the overlay and updates the result. Missing objects on the way are created,
+     * and an array index equal to the size of the array appends to it.
+     *
+     * @param pointer the location in the overlay to set
+     * @param value   the new value
+     * @return the merged JsonNode
+     * @throws IllegalArgumentException if the pointer leads through a value or outside an array
+     */
+    public JsonNode set(JsonPointer pointer, JsonNode value) {
+        return update(with(overlay, pointer, value));
+    }
+
+    /**
+     * Removes a value from the overlay and updates the result.
+     *
+     * @param pointer the location in the overlay to remove
+     * @return the merged JsonNode
+     * @throws IllegalArgumentException if the pointer is the root or leads through a value or outside an array
+     */
+    public JsonNode remove(JsonPointer pointer) {
+        if (pointer.matches())
+            throw new IllegalArgumentException("Cannot remove the root of the overlay");
+        return update(with(overlay, pointer, null));
+    }
+
+    private MergeContext context() {
+        // The session never modifies its trees, so results may share their nodes
+        return new MergeContext(merger, true);
+    }
+
+    /**
+     * Merges the base with a changed overlay, given the previous overlay and result at the same path.
+     */
+    private JsonNode remerge(MergeContext context, RuleIndex.Node cursor, JsonNode base, JsonNode previousOverlay, JsonNode overlay, JsonNode previous) {
+        if (overlay == previousOverlay)
+            return previous;
+
+        MergeRule rule = cursor.getRule();
+        Strategy strategy = rule != null ? rule.getStrategy() : merger.getConfig().getObjectStrategy();
+        if (base.isObject() && previousOverlay.isObject() && overlay.isObject() && previous.isObject() && strategy == Strategy.MERGE)
+            return remergeObjects(context, cursor, (ObjectNode) base, (ObjectNode) previousOverlay, (ObjectNode) overlay, (ObjectNode) previous);
+
+        if (overlay.equals(previousOverlay))
+            return previous;
+        return merger.mergeNodes(context, cursor, base, overlay);
+    }
+
+    /**
+     * Rebuilds a merged object the way {@link Merger} merges objects, taking every field whose
+     * inputs did not change from the previous result.
+     */
+    private ObjectNode remergeObjects(MergeContext context, RuleIndex.Node cursor, ObjectNode base, ObjectNode previousOverlay, ObjectNode overlay, ObjectNode previous) {
+        ObjectNode result = merger.getObjectNode(base.size() + overlay.size());
+
+        for (Map.Entry<String, JsonNode> entry : base.properties()) {
+            String field = entry.getKey();
+            JsonNode baseVal = entry.getValue();
+            JsonNode overlayVal = overlay.get(field);
+            JsonNode previousVal = previousOverlay.get(field);
+            RuleIndex.Node childCursor = cursor.child(field);
+            MergeRule childRule = childCursor.getRule();
+            Strategy childStrategy = childRule != null ? childRule.getStrategy() : merger.getConfig().getObjectStrategy();
+
+            if (overlayVal != null) { // Both exist
+                if (childStrategy == Strategy.REPLACE) {
+                    result.set(field, overlayVal == previousVal ? previous.get(field) : overlayVal);
+                } else if (childStrategy == Strategy.MERGE || childStrategy == Strategy.UNION) {
+                    context.push(field);
+                    result.set(field, previousVal != null
+                        ? remerge(context, childCursor, baseVal, previousVal, overlayVal, previous.get(field))
+                        : merger.mergeNodes(context, childCursor, baseVal, overlayVal));
+                    context.pop();
+                } else {
+                    result.set(field, previous.get(field));
+                }
+            } else if (childStrategy != Strategy.REPLACE) { // field removed
+                result.set(field, previousVal == null ? previous.get(field) : baseVal);
+            }
+        }
+
+        for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+            String field = entry.getKey();
+            if (!base.has(field)) // field added
+                result.set(field, entry.getValue() == previousOverlay.get(field) ? previous.get(field) : entry.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a copy of the node with the value at the pointer replaced, or removed if the value is null.
+     * Only the containers on the path are copied, all other nodes are shared with the original.
+     */
+    private JsonNode with(JsonNode node, JsonPointer pointer, JsonNode value) {
+        if (pointer.matches())
+            return value;
+
+        JsonPointer tail = pointer.tail();
+        if (node.isObject()) {
+            String field = pointer.getMatchingProperty();
+            JsonNode child = node.get(field);
+            if (value == null && child == null)
+                return node;
+
+            ObjectNode copy = merger.getObjectNode(node.size() + 1);
+            copy.setAll((ObjectNode) node);
+            if (value == null && tail.matches()) {
+                copy.remove(field);
+            } else {
+                copy.set(field, with(child != null ? child : merger.getObjectNode(), tail, value));
+            }
+            return copy;
+        } else if (node.isArray()) {
+            int index = pointer.getMatchingIndex();
+            if (index < 0 || index > node.size() || (index == node.size() && (value == null || !tail.matches())))
+                throw new IllegalArgumentException(String.format("Array index '%s' out of range in overlay", pointer.getMatchingProperty()));
+
+            ArrayNode copy = merger.getArrayNode(node.size() + 1);
+            copy.addAll((ArrayNode) node);
+            if (index == node.size()) {
+                copy.add(value);
+            } else if (value == null && tail.matches()) {
+                copy.remove(index);
+            } else {
+                copy.set(index, with(node.get(index), tail, value));
+            }
+            return copy;
+        }
+        throw new IllegalArgumentException(String.format("Cannot descend into '%s' of a value in overlay", pointer.getMatchingProperty()));
+    }
+}
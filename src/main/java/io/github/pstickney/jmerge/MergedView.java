@@ -0,0 +1,294 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A read-only view of the result of merging an overlay onto a base, created with
+ * {@link Merger#view(JsonNode, JsonNode)}, that merges only what is accessed.
+ * <p>
+ * Objects that are merged field by field are not built: each field is resolved the first time it is
+ * accessed and remembered. Fields taken from one side only are the input nodes themselves, and any other
+ * value, such as a merged array, is merged in full on first access. A lookup therefore costs the part of
+ * the documents on its path, and {@link #materialize()} builds the full result, identical to
+ * {@link Merger#merge(JsonNode, JsonNode)}.
+ * <p>
+ * The view reads the base and overlay while it is used, so they must not be modified in the meantime.
+ * Views may be shared between threads.
+ */
+public final class MergedView {
+
+    private static final MergedView MISSING = new MergedView(null, null, null, null, null, MissingNode.getInstance());
+
+    private final Merger merger;
+    private final RuleIndex.Node cursor;
+    private final MergedView parent;
+    private final String field;
+    private final JsonNode base;
+    private final JsonNode overlay;
+    private final boolean lazy;
+    private final ConcurrentMap<String, MergedView> fields;
+    private volatile JsonNode resolved;
+
+    /**
+     * @param base    the base node, or null if the value is the overlay node as it is
+     * @param overlay the overlay node
+     */
+    private MergedView(Merger merger, RuleIndex.Node cursor, MergedView parent, String field, JsonNode base, JsonNode overlay) {
+        this.merger = merger;
+        this.cursor = cursor;
+        this.parent = parent;
+        this.field = field;
+        this.base = base;
+        this.overlay = overlay;
+        this.lazy = base != null && base.isObject() && overlay.isObject() && strategy() == Strategy.MERGE;
+        this.fields = lazy ? new ConcurrentHashMap<>() : null;
+        this.resolved = base == null ? overlay : null;
+    }
+
+    static MergedView of(Merger merger, JsonNode base, JsonNode overlay) {
+        return new MergedView(merger, merger.ruleIndex().root(), null, null, base, overlay);
+    }
+
+    /**
+     * Returns the type of the merged value, which for objects merged field by field is known without merging.
+     *
+     * @return the JsonNodeType
+     */
+    public JsonNodeType getNodeType() {
+        return lazy ? JsonNodeType.OBJECT : node().getNodeType();
+    }
+
+    public boolean isObject() {
+        return getNodeType() == JsonNodeType.OBJECT;
+    }
+
+    public boolean isArray() {
+        return getNodeType() == JsonNodeType.ARRAY;
+    }
+
+    public boolean isValueNode() {
+        return !isObject() && !isArray() && !isMissingNode();
+    }
+
+    public boolean isMissingNode() {
+        return getNodeType() == JsonNodeType.MISSING;
+    }
+
+    /**
+     * Returns the number of fields of an object or elements of an array, and 0 for other values.
+     *
+     * @return the size of the merged value
+     */
+    public int size() {
+        return lazy ? fieldNames().size() : node().size();
+    }
+
+    /**
+     * Returns the field names of a merged object in the order of the merged result, without merging their values.
+     *
+     * @return the field names, empty if the value is not an object
+     */
+    public List<String> fieldNames() {
+        if (!lazy) {
+            List<String> names = new ArrayList<>();
+            node().fieldNames().forEachRemaining(names::add);
+            return names;
+        }
+
+        List<String> names = new ArrayList<>(base.size() + overlay.size());
+        for (Map.Entry<String, JsonNode> entry : base.properties()) {
+            if (overlay.has(entry.getKey()) || childStrategy(cursor.child(entry.getKey())) != Strategy.REPLACE)
+                names.add(entry.getKey());
+        }
+        for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+            if (!base.has(entry.getKey()))
+                names.add(entry.getKey());
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Returns the view of a field of a merged object.
+     *
+     * @param field the field name
+     * @return the view of the field, or null if the value is not an object or has no such field
+     */
+    public MergedView get(String field) {
+        MergedView view = path(field);
+        return view.isMissingNode() ? null : view;
+    }
+
+    /**
+     * Returns the view of an element of a merged array.
+     *
+     * @param index the index of the element
+     * @return the view of the element, or null if the value is not an array or has no such element
+     */
+    public MergedView get(int index) {
+        MergedView view = path(index);
+        return view.isMissingNode() ? null : view;
+    }
+
+    /**
+     * Returns the view of a field of a merged object, resolving and remembering it on first access.
+     *
+     * @param field the field name
+     * @return the view of the field, a missing view if the value is not an object or has no such field
+     */
+    public MergedView path(String field) {
+        if (!lazy)
+            return wrap(node().get(field));
+
+        MergedView view = fields.get(field);
+        if (view == null)
+            view = fields.computeIfAbsent(field, this::resolveField);
+        return view;
+    }
+
+    /**
+     * Returns the view of an element of a merged array.
+     *
+     * @param index the index of the element
+     * @return the view of the element, a missing view if the value is not an array or has no such element
+     */
+    public MergedView path(int index) {
+        return lazy ? MISSING : wrap(node().get(index));
+    }
+
+    /**
+     * Returns the view of the value at a JSON Pointer, relative to this value.
+     *
+     * @param pointer the JSON Pointer
+     * @return the view of the value, a missing view if there is none
+     */
+    public MergedView at(JsonPointer pointer) {
+        MergedView view = this;
+        while (!pointer.matches() && !view.isMissingNode()) {
+            view = view.isArray() ? view.path(pointer.getMatchingIndex()) : view.path(pointer.getMatchingProperty());
+            pointer = pointer.tail();
+        }
+        return view;
+    }
+
+    /**
+     * Returns the view of the value at a JSON Pointer expression, relative to this value.
+     *
+     * @param pointer the JSON Pointer expression, e.g. {@code /spec/replicas}
+     * @return the view of the value, a missing view if there is none
+     * @throws IllegalArgumentException if the expression is not a valid JSON Pointer
+     */
+    public MergedView at(String pointer) {
+        return at(JsonPointer.compile(pointer));
+    }
+
+    /**
+     * Returns the merged value as text, see {@link JsonNode#asText()}.
+     *
+     * @return the text of the merged value
+     */
+    public String asText() {
+        return lazy ? "" : node().asText();
+    }
+
+    /**
+     * Builds the merged value as a tree, merging everything that was not accessed yet. With structural
+     * sharing the tree shares nodes with the inputs and with the view, otherwise it is a fresh copy.
+     *
+     * @return the merged JsonNode
+     */
+    public JsonNode materialize() {
+        if (isMissingNode())
+            return MissingNode.getInstance();
+        if (!lazy)
+            return merger.getConfig().isStructuralSharing() ? node() : merger.copyTree(node());
+
+        List<String> names = fieldNames();
+        ObjectNode result = merger.getObjectNode(names.size());
+        for (String name : names) {
+            result.set(name, path(name).materialize());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return materialize().toString();
+    }
+
+    /**
+     * Returns the merged value of a view that is not merged field by field, merging it on first access.
+     */
+    private JsonNode node() {
+        JsonNode current = resolved;
+        if (current == null) {
+            // Only read by this view, so the result may share the nodes of the inputs
+            MergeContext context = new MergeContext(merger, true);
+            push(context, this);
+            current = merger.mergeNodes(context, cursor, base, overlay);
+            resolved = current;
+        }
+        return current;
+    }
+
+    /**
+     * Decides the value of a field the way {@link Merger} merges the fields of an object.
+     */
+    private MergedView resolveField(String name) {
+        JsonNode baseVal = base.get(name);
+        JsonNode overlayVal = overlay.get(name);
+        RuleIndex.Node childCursor = cursor.child(name);
+        Strategy childStrategy = childStrategy(childCursor);
+
+        if (baseVal != null && overlayVal != null) { // Both exist
+            if (childStrategy == Strategy.REPLACE)
+                return child(childCursor, name, null, overlayVal);
+            if (childStrategy == Strategy.MERGE || childStrategy == Strategy.UNION)
+                return child(childCursor, name, baseVal, overlayVal);
+            return child(childCursor, name, null, baseVal);
+        } else if (baseVal != null) {
+            return childStrategy != Strategy.REPLACE ? child(childCursor, name, null, baseVal) : MISSING;
+        } else if (overlayVal != null) { // field added
+            return child(childCursor, name, null, overlayVal);
+        }
+        return MISSING;
+    }
+
+    private MergedView child(RuleIndex.Node childCursor, String name, JsonNode baseVal, JsonNode value) {
+        return new MergedView(merger, childCursor, this, name, baseVal, value);
+    }
+
+    private MergedView wrap(JsonNode node) {
+        return node != null ? new MergedView(merger, RuleIndex.Node.NONE, null, null, null, node) : MISSING;
+    }
+
+    private Strategy strategy() {
+        MergeRule rule = cursor.getRule();
+        return rule != null ? rule.getStrategy() : merger.getConfig().getObjectStrategy();
+    }
+
+    private Strategy childStrategy(RuleIndex.Node childCursor) {
+        MergeRule childRule = childCursor.getRule();
+        return childRule != null ? childRule.getStrategy() : merger.getConfig().getObjectStrategy();
+    }
+
+    /**
+     * Pushes the fields leading to a view, so errors and listeners report the path of the merged value.
+     */
+    private static void push(MergeContext context, MergedView view) {
+        if (view.parent != null) {
+            push(context, view.parent);
+            context.push(view.field);
+        }
+    }
+}
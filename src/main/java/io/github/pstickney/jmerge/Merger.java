@@ -1,24 +1,70 @@
 package io.github.pstickney.jmerge;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.pstickney.jmerge.exception.ConfigException;
 import io.github.pstickney.jmerge.exception.StrategyException;
 import io.github.pstickney.jmerge.util.MergerUtil;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
 
 /**
  * The core merging engine responsible for merging JSON/YAML structures based on configurable strategies.
  * This abstract class provides the general merging logic and delegates JSON/YAML-specific node creation
  * to subclasses via abstract methods.
+ * <p>
+ * The configuration is compiled into an immutable {@link CompiledConfig} when the Merger is constructed,
+ * and readers and writers are built once. A Merger holds no per-call state, so one instance can be shared
+ * by any number of threads without locking, as long as its mapper is not customized while it is in use.
  */
 public abstract class Merger {
 
+    private static final ClassValue<Boolean> PRESIZED_OBJECTS = presizable("getObjectNode");
+    private static final ClassValue<Boolean> PRESIZED_ARRAYS = presizable("getArrayNode");
+
+    /**
+     * The configuration of this Merger as a MergeConfig, kept for subclasses written against it.
+     * It is a copy of the compiled configuration, so changing it has no effect on merges.
+     *
+     * @deprecated use {@link #getConfig()}, the compiled configuration that merges apply
+     */
+    @Deprecated
     protected final MergeConfig config;
+    private final CompiledConfig compiled;
+    private final boolean presizedObjects = PRESIZED_OBJECTS.get(getClass());
+    private final boolean presizedArrays = PRESIZED_ARRAYS.get(getClass());
+    private volatile ObjectMapper defaultMapper;
+    private volatile ObjectReader reader;
+    private volatile ObjectWriter writer;
 
     /**
      * Constructs a Merger with the default merge configuration.
@@ -29,11 +75,32 @@ public abstract class Merger {
 
     /**
      * Constructs a Merger with the specified merge configuration.
+     * The configuration is compiled, so later changes to it have no effect on this Merger.
      *
      * @param config the merge configuration to apply during merging
+     * @throws ConfigException if the configuration is invalid
      */
     public Merger(MergeConfig config) {
-        this.config = config;
+        this(config.compile());
+    }
+
+    /**
+     * Constructs a Merger with the specified compiled merge configuration.
+     *
+     * @param config the compiled merge configuration to apply during merging
+     */
+    public Merger(CompiledConfig config) {
+        this.compiled = config;
+        this.config = config.toMergeConfig();
+    }
+
+    /**
+     * Returns the compiled configuration of this Merger.
+     *
+     * @return the CompiledConfig
+     */
+    public CompiledConfig getConfig() {
+        return compiled;
     }
 
     /**
@@ -48,6 +115,7 @@ public abstract class Merger {
 
     /**
      * Merges two objects of type T according to the configured strategies.
+     * The objects are converted to trees and back directly, without producing any text.
      *
      * @param base        the base object
      * @param overlay     the overlay object
@@ -56,7 +124,16 @@ public abstract class Merger {
      * @return the merged object
      * @throws JsonProcessingException if parsing or processing fails
      */
-    public abstract <T> T merge(T base, T overlay, Class<T> outputClass) throws JsonProcessingException;
+    public <T> T merge(T base, T overlay, Class<T> outputClass) throws JsonProcessingException {
+        ObjectMapper mapper = getMapper();
+        JsonNode baseNode = valueToTree(mapper, base);
+        JsonNode overlayNode = valueToTree(mapper, overlay);
+
+        // The trees are private to this call, so the result may share their nodes
+        JsonNode node = merge(new MergeContext(this, true), baseNode, overlayNode);
+
+        return mapper.treeToValue(node, outputClass);
+    }
 
     /**
      * Provides a new empty ObjectNode instance specific to the JSON/YAML implementation.
@@ -72,6 +149,143 @@ public abstract class Merger {
      */
     protected abstract ArrayNode getArrayNode();
 
+    /**
+     * Provides a new empty ObjectNode for a result object that will hold about the given number of fields.
+     * By default the size is ignored and the object comes from {@link #getObjectNode()}, so that overriding
+     * that method is enough to control every object the Merger creates. Subclasses that create their objects
+     * from the node factory may override this method with {@link #presizedObjectNode(int)}.
+     *
+     * @param expectedSize the expected number of fields
+     * @return a new empty ObjectNode
+     */
+    protected ObjectNode getObjectNode(int expectedSize) {
+        return getObjectNode();
+    }
+
+    /**
+     * Provides a new empty ArrayNode for a result array that will hold about the given number of elements.
+     * By default the size is ignored and the array comes from {@link #getArrayNode()}. Subclasses that create
+     * their arrays from the node factory may override this method with {@link #presizedArrayNode(int)}.
+     *
+     * @param expectedSize the expected number of elements
+     * @return a new empty ArrayNode
+     */
+    protected ArrayNode getArrayNode(int expectedSize) {
+        return getArrayNode();
+    }
+
+    /**
+     * Creates a new empty ObjectNode with room for the given number of fields, so that filling it does not rehash.
+     * Objects of the stock {@link JsonNodeFactory} are created with a pre-sized map. The object comes from
+     * {@link #getObjectNode()} instead for a custom factory, which decides the map implementation, and when
+     * a subclass overrides {@link #getObjectNode()} below the class that overrides {@link #getObjectNode(int)}.
+     *
+     * @param expectedSize the expected number of fields
+     * @return a new empty ObjectNode
+     */
+    protected final ObjectNode presizedObjectNode(int expectedSize) {
+        JsonNodeFactory factory = getNodeFactory();
+        if (factory.getClass() != JsonNodeFactory.class || expectedSize <= 0 || !presizedObjects)
+            return getObjectNode();
+        return new ObjectNode(factory, new LinkedHashMap<>(MergerUtil.mapCapacity(expectedSize)));
+    }
+
+    /**
+     * Creates a new empty ArrayNode with room for the given number of elements from the node factory, or takes it
+     * from {@link #getArrayNode()} when a subclass overrides that below the class that overrides {@link #getArrayNode(int)}.
+     *
+     * @param expectedSize the expected number of elements
+     * @return a new empty ArrayNode
+     */
+    protected final ArrayNode presizedArrayNode(int expectedSize) {
+        return presizedArrays ? getNodeFactory().arrayNode(expectedSize) : getArrayNode();
+    }
+
+    /**
+     * Deep-copies a node into containers of this Merger, each sized for the container it copies,
+     * so that copies made outside a merge are built like the nodes of a result.
+     *
+     * @param node the node to copy
+     * @param <T>  the node type
+     * @return the copy, or the node itself if it is an immutable value node
+     */
+    @SuppressWarnings("unchecked")
+    <T extends JsonNode> T copyTree(T node) {
+        return (T) copyNode(node);
+    }
+
+    private JsonNode copyNode(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode copy = getObjectNode(node.size());
+            for (Map.Entry<String, JsonNode> entry : node.properties()) {
+                copy.set(entry.getKey(), copyNode(entry.getValue()));
+            }
+            return copy;
+        } else if (node.isArray()) {
+            ArrayNode copy = getArrayNode(node.size());
+            for (JsonNode item : node) {
+                copy.add(copyNode(item));
+            }
+            return copy;
+        }
+        // Value nodes are immutable
+        return node;
+    }
+
+    /**
+     * Whether the unsized factory method in effect for a Merger class is declared no lower than the sized one,
+     * so that the sized method was written with the unsized one in view and may bypass it.
+     */
+    private static ClassValue<Boolean> presizable(String name) {
+        return new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                Class<?> unsized = declaringClass(type, name);
+                Class<?> sized = declaringClass(type, name, int.class);
+                return unsized != null && sized != null && unsized.isAssignableFrom(sized);
+            }
+        };
+    }
+
+    private static Class<?> declaringClass(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                return current.getDeclaredMethod(name, parameterTypes).getDeclaringClass();
+            } catch (NoSuchMethodException e) {
+                // declared further up
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Provides the factory of the nodes this Merger creates and reads: the {@link MergeConfig#getNodeFactory() nodeFactory}
+     * of the configuration if set, otherwise the factory of the mapper.
+     *
+     * @return the JsonNodeFactory
+     */
+    protected JsonNodeFactory getNodeFactory() {
+        return compiled.getNodeFactory() != null ? compiled.getNodeFactory() : getMapper().getNodeFactory();
+    }
+
+    /**
+     * Provides the mapper used to read and write documents in the JSON/YAML-specific format.
+     * By default this is a plain JSON mapper creating its nodes with the configured
+     * {@link MergeConfig#getNodeFactory() nodeFactory}, if any; subclasses for other formats override it.
+     *
+     * @return the ObjectMapper of this Merger
+     */
+    protected ObjectMapper getMapper() {
+        ObjectMapper current = defaultMapper;
+        if (current == null) {
+            current = new ObjectMapper();
+            if (compiled.getNodeFactory() != null)
+                current.setNodeFactory(compiled.getNodeFactory());
+            defaultMapper = current;
+        }
+        return current;
+    }
+
     /**
      * Merges two JsonNode trees recursively according to merge rules and strategies.
      * Objects and arrays are merged based on configuration; scalar values are replaced.
@@ -81,27 +295,500 @@ public abstract class Merger {
      * @return the merged JsonNode result
      */
     public JsonNode merge(JsonNode base, JsonNode overlay) {
-        return mergeNodes("", base, overlay);
+        return merge(new MergeContext(this), base, overlay);
+    }
+
+    /**
+     * Merges two JsonNode trees from the root with the given context, in parallel if configured.
+     *
+     * @param context the state of the merge
+     * @param base    the base JsonNode
+     * @param overlay the overlay JsonNode to merge on top of the base
+     * @return the merged JsonNode result
+     */
+    JsonNode merge(MergeContext context, JsonNode base, JsonNode overlay) {
+        RuleIndex rules = context.getRules();
+        if (context.isStructuralSharing() && context.isIdempotent() && base.equals(overlay))
+            return overlay;
+
+        if (compiled.isParallel()) {
+            ForkJoinPool pool = compiled.getParallelPool() != null ? compiled.getParallelPool() : ForkJoinPool.commonPool();
+            context.enableParallelism(pool, compiled.getParallelThreshold());
+            return pool.invoke(new NodeTask(() -> mergeNodes(context, rules.root(), base, overlay)));
+        }
+        return mergeNodes(context, rules.root(), base, overlay);
+    }
+
+    /**
+     * Prepares a base document for merging many overlays onto it. The base is parsed and
+     * its keyed arrays are indexed once, see {@link PreparedBase}.
+     *
+     * @param base the base JSON/YAML string
+     * @return the PreparedBase
+     * @throws JsonProcessingException if parsing fails
+     */
+    public PreparedBase prepare(String base) throws JsonProcessingException {
+        return new PreparedBase(this, getReader().readTree(base));
+    }
+
+    /**
+     * Prepares a base tree for merging many overlays onto it. The tree is copied, so later
+     * changes to it do not affect the PreparedBase.
+     *
+     * @param base the base JsonNode
+     * @return the PreparedBase
+     */
+    public PreparedBase prepare(JsonNode base) {
+        return new PreparedBase(this, copyTree(base));
+    }
+
+    /**
+     * Starts an incremental merge session, see {@link MergeSession}.
+     *
+     * @param base    the base JSON/YAML string
+     * @param overlay the initial overlay JSON/YAML string
+     * @return the MergeSession holding the first result
+     * @throws JsonProcessingException if parsing fails
+     */
+    public MergeSession session(String base, String overlay) throws JsonProcessingException {
+        ObjectReader reader = getReader();
+        return new MergeSession(this, reader.readTree(base), reader.readTree(overlay));
+    }
+
+    /**
+     * Starts an incremental merge session, see {@link MergeSession}. The trees are copied,
+     * so later changes to them do not affect the session.
+     *
+     * @param base    the base JsonNode
+     * @param overlay the initial overlay JsonNode
+     * @return the MergeSession holding the first result
+     */
+    public MergeSession session(JsonNode base, JsonNode overlay) {
+        return new MergeSession(this, copyTree(base), copyTree(overlay));
+    }
+
+    /**
+     * Returns a lazy view of the result of merging an overlay onto a base, which merges each part of the
+     * result only when it is first accessed, see {@link MergedView}. The trees are not copied and must not
+     * be modified while the view is in use.
+     *
+     * @param base    the base JsonNode
+     * @param overlay the overlay JsonNode to merge on top of the base
+     * @return the MergedView of the result
+     */
+    public MergedView view(JsonNode base, JsonNode overlay) {
+        return MergedView.of(this, base, overlay);
+    }
+
+    /**
+     * Parses a base and an overlay and returns a lazy view of the result of merging them, see {@link MergedView}.
+     *
+     * @param base    the base JSON/YAML string
+     * @param overlay the overlay JSON/YAML string to merge on top of the base
+     * @return the MergedView of the result
+     * @throws JsonProcessingException if parsing fails
+     */
+    public MergedView view(String base, String overlay) throws JsonProcessingException {
+        ObjectReader reader = getReader();
+        return MergedView.of(this, reader.readTree(base), reader.readTree(overlay));
+    }
+
+    /**
+     * Merges two JsonNode trees and also describes the effect of the merge as a patch to the base,
+     * so that applying the patch to the base with {@link #applyDelta(JsonNode, JsonNode, DeltaFormat)}
+     * yields the result. The patch is computed from the parts of the trees the overlay changed.
+     *
+     * @param base    the base JsonNode
+     * @param overlay the overlay JsonNode to merge on top of the base
+     * @param format  the format of the patch
+     * @return the merged JsonNode result and the patch
+     * @throws IllegalArgumentException if the change cannot be expressed as a merge patch
+     */
+    public MergeDelta mergeWithDelta(JsonNode base, JsonNode overlay, DeltaFormat format) {
+        JsonNode result = mergeShared(base, overlay);
+        JsonNode patch = new Delta(this, compiled.isStructuralSharing()).diff(base, result, format);
+        return new MergeDelta(compiled.isStructuralSharing() ? result : copyTree(result), patch, format);
+    }
+
+    /**
+     * Describes the effect of merging an overlay onto a base as a patch to the base, without building a result for the caller.
+     *
+     * @param base    the base JsonNode
+     * @param overlay the overlay JsonNode to merge on top of the base
+     * @param format  the format of the patch
+     * @return the patch
+     * @throws IllegalArgumentException if the change cannot be expressed as a merge patch
+     */
+    public JsonNode delta(JsonNode base, JsonNode overlay, DeltaFormat format) {
+        return new Delta(this, compiled.isStructuralSharing()).diff(base, mergeShared(base, overlay), format);
+    }
+
+    /**
+     * Describes the effect of merging an overlay onto a base as a patch to the base.
+     *
+     * @param base    the base JSON/YAML string
+     * @param overlay the overlay JSON/YAML string to merge on top of the base
+     * @param format  the format of the patch
+     * @return the patch as a JSON/YAML string
+     * @throws JsonProcessingException  if parsing or processing fails
+     * @throws IllegalArgumentException if the change cannot be expressed as a merge patch
+     */
+    public String delta(String base, String overlay, DeltaFormat format) throws JsonProcessingException {
+        ObjectReader reader = getReader();
+        JsonNode baseNode = reader.readTree(base);
+
+        // The trees are private to this call, so the patch may share their nodes
+        JsonNode patch = new Delta(this, true).diff(baseNode, mergeShared(baseNode, reader.readTree(overlay)), format);
+
+        return getWriter().writeValueAsString(patch);
+    }
+
+    /**
+     * Applies a patch, as produced by {@link #delta(JsonNode, JsonNode, DeltaFormat)}, to a base.
+     * The base is not modified.
+     *
+     * @param base   the base JsonNode
+     * @param delta  the patch to apply
+     * @param format the format of the patch
+     * @return the patched JsonNode
+     * @throws IllegalArgumentException if the patch is malformed or does not fit the base
+     */
+    public JsonNode applyDelta(JsonNode base, JsonNode delta, DeltaFormat format) {
+        return new Delta(this, compiled.isStructuralSharing()).apply(base, delta, format);
+    }
+
+    /**
+     * Applies a patch, as produced by {@link #delta(String, String, DeltaFormat)}, to a base.
+     *
+     * @param base   the base JSON/YAML string
+     * @param delta  the patch to apply as a JSON/YAML string
+     * @param format the format of the patch
+     * @return the patched JSON/YAML string
+     * @throws JsonProcessingException  if parsing or processing fails
+     * @throws IllegalArgumentException if the patch is malformed or does not fit the base
+     */
+    public String applyDelta(String base, String delta, DeltaFormat format) throws JsonProcessingException {
+        ObjectReader reader = getReader();
+        JsonNode node = new Delta(this, true).apply(reader.readTree(base), reader.readTree(delta), format);
+
+        return getWriter().writeValueAsString(node);
+    }
+
+    /**
+     * Merges with structural sharing, so the result holds every base subtree the overlay did not touch as the same node.
+     */
+    private JsonNode mergeShared(JsonNode base, JsonNode overlay) {
+        return merge(new MergeContext(this, true), base, overlay);
+    }
+
+    /**
+     * Merges a base with a list of overlays in a single pass, applying the overlays in order.
+     * Each node is resolved across all layers at once, so no intermediate merge results are built.
+     * The result is identical to merging the overlays one after another; only invalid strategies inside
+     * parts of an overlay that a later overlay replaces entirely are no longer reported.
+     *
+     * @param base     the base JsonNode
+     * @param overlays the overlay JsonNodes, in the order they are applied
+     * @return the merged JsonNode result
+     */
+    public JsonNode merge(JsonNode base, List<JsonNode> overlays) {
+        RuleIndex rules = compiled.getRuleIndex();
+        List<JsonNode> layers = new ArrayList<>(overlays.size() + 1);
+        layers.add(base);
+        layers.addAll(overlays);
+        return new LayeredMerge(this, compiled, new MergeContext(this)).merge(rules.root(), layers);
+    }
+
+    /**
+     * Merges a base string with a list of overlay strings in a single pass, applying the overlays in order.
+     *
+     * @param base     the base JSON/YAML string
+     * @param overlays the overlay JSON/YAML strings, in the order they are applied
+     * @return the merged JSON/YAML string
+     * @throws JsonProcessingException if parsing or processing fails
+     */
+    public String merge(String base, List<String> overlays) throws JsonProcessingException {
+        ObjectReader reader = getReader();
+        List<JsonNode> overlayNodes = new ArrayList<>(overlays.size());
+        for (String overlay : overlays) {
+            overlayNodes.add(reader.readTree(overlay));
+        }
+
+        JsonNode node = merge(reader.readTree(base), overlayNodes);
+
+        return getWriter().writeValueAsString(node);
+    }
+
+    /**
+     * Merges a base document with a list of overlay documents in a single pass, applying the overlays in order.
+     *
+     * @param base     the reader for the base JSON/YAML document
+     * @param overlays the readers for the overlay JSON/YAML documents, in the order they are applied
+     * @param output   the writer to write the merged JSON/YAML document to
+     * @throws IOException if reading or writing fails
+     */
+    public void merge(Reader base, List<Reader> overlays, Writer output) throws IOException {
+        ObjectReader reader = getReader();
+        List<JsonNode> overlayNodes = new ArrayList<>(overlays.size());
+        for (Reader overlay : overlays) {
+            overlayNodes.add(reader.readTree(overlay));
+        }
+
+        JsonNode node = merge(reader.readTree(base), overlayNodes);
+
+        getWriter().writeValue(output, node);
+    }
+
+    /**
+     * Merges a base document streamed from a parser with an overlay tree, writing the result to a generator.
+     * Only the overlay is materialized, so peak memory is proportional to the overlay and the nesting depth
+     * rather than to the base. The output is identical to serializing {@link #merge(JsonNode, JsonNode)}.
+     *
+     * @param base      the parser to read the base document from
+     * @param overlay   the overlay JsonNode to merge on top of the base
+     * @param generator the generator to write the merged document to
+     * @throws IOException if reading or writing fails
+     */
+    public void merge(JsonParser base, JsonNode overlay, JsonGenerator generator) throws IOException {
+        new StreamingMerge(this, compiled, new MergeContext(this), getMapper()).merge(base, overlay, generator);
+    }
+
+    /**
+     * Merges a base document with an overlay document, streaming the base from its reader
+     * and the result to the output writer. Only the overlay is read fully into memory.
+     *
+     * @param base    the reader for the base JSON/YAML document
+     * @param overlay the reader for the overlay JSON/YAML document
+     * @param output  the writer to write the merged JSON/YAML document to
+     * @throws IOException if reading or writing fails
+     */
+    public void merge(Reader base, Reader overlay, Writer output) throws IOException {
+        ObjectReader reader = getReader();
+        JsonNode overlayNode = reader.readTree(overlay);
+
+        try (JsonParser parser = reader.createParser(base); JsonGenerator generator = getWriter().createGenerator(output)) {
+            merge(parser, overlayNode, generator);
+        }
+    }
+
+    /**
+     * Merges a base document with an overlay document, streaming the base from its input stream
+     * and the result as UTF-8 to the output stream. Only the overlay is read fully into memory,
+     * and no intermediate String is built for either input or the result.
+     *
+     * @param base    the input stream for the base JSON/YAML document
+     * @param overlay the input stream for the overlay JSON/YAML document
+     * @param output  the output stream to write the merged JSON/YAML document to
+     * @throws IOException if reading or writing fails
+     */
+    public void merge(InputStream base, InputStream overlay, OutputStream output) throws IOException {
+        ObjectReader reader = getReader();
+        JsonNode overlayNode = reader.readTree(overlay);
+
+        try (JsonParser parser = reader.createParser(base); JsonGenerator generator = getWriter().createGenerator(output, JsonEncoding.UTF8)) {
+            merge(parser, overlayNode, generator);
+        }
+    }
+
+    /**
+     * Merges two encoded documents and returns the merged document in the same format, encoded as UTF-8
+     * for text formats. Binary formats such as Smile and CBOR are merged natively.
+     *
+     * @param base    the base JSON/YAML document
+     * @param overlay the overlay JSON/YAML document to merge on top of the base
+     * @return the merged JSON/YAML document
+     * @throws IOException if parsing or processing fails
+     */
+    public byte[] merge(byte[] base, byte[] overlay) throws IOException {
+        ObjectReader reader = getReader();
+        JsonNode overlayNode = reader.readTree(overlay);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(base.length + overlay.length);
+        try (JsonParser parser = reader.createParser(base); JsonGenerator generator = getWriter().createGenerator(output, JsonEncoding.UTF8)) {
+            merge(parser, overlayNode, generator);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Merges two JSON/YAML files into an output file. The base is streamed, and with
+     * {@link MergeConfig#getMemoryMapFiles() memoryMapFiles} enabled both inputs are read through
+     * memory-mapped channels instead of being copied through the heap by a stream.
+     *
+     * @param base    the path of the base JSON/YAML document
+     * @param overlay the path of the overlay JSON/YAML document
+     * @param output  the path to write the merged JSON/YAML document to
+     * @throws IOException if reading or writing fails
+     */
+    public void merge(Path base, Path overlay, Path output) throws IOException {
+        try (InputStream baseStream = open(base); InputStream overlayStream = open(overlay); OutputStream outputStream = Files.newOutputStream(output)) {
+            merge(baseStream, overlayStream, outputStream);
+        }
+    }
+
+    /**
+     * Merges two JsonNode trees on the given executor.
+     *
+     * @param base     the base JsonNode
+     * @param overlay  the overlay JsonNode to merge on top of the base
+     * @param executor the executor to merge on
+     * @return the future merged JsonNode result
+     */
+    public CompletableFuture<JsonNode> mergeAsync(JsonNode base, JsonNode overlay, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> merge(base, overlay), executor);
+    }
+
+    /**
+     * Merges two JSON/YAML strings on the given executor. Parse errors complete the future exceptionally.
+     *
+     * @param base     the base JSON/YAML string
+     * @param overlay  the overlay JSON/YAML string to merge on top of the base
+     * @param executor the executor to parse and merge on
+     * @return the future merged JSON/YAML string
+     */
+    public CompletableFuture<String> mergeAsync(String base, String overlay, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return merge(base, overlay);
+            } catch (JsonProcessingException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Merges two encoded documents on the given executor, see {@link #merge(byte[], byte[])}.
+     * Parse errors complete the future exceptionally.
+     *
+     * @param base     the base JSON/YAML document
+     * @param overlay  the overlay JSON/YAML document to merge on top of the base
+     * @param executor the executor to parse and merge on
+     * @return the future merged JSON/YAML document
+     */
+    public CompletableFuture<byte[]> mergeAsync(byte[] base, byte[] overlay, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return merge(base, overlay);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Starts a merge whose base and overlay are fed incrementally as chunks of bytes, see {@link AsyncMerge}.
+     * The chunks are parsed as they are fed, and the documents are merged on the executor once both have ended.
+     *
+     * @param executor the executor to merge on
+     * @return the AsyncMerge to feed the documents to
+     * @throws IOException if the parsers cannot be created
+     */
+    public AsyncMerge mergeAsync(Executor executor) throws IOException {
+        return new AsyncMerge(this, executor);
+    }
+
+    /**
+     * Provides the writer for merged documents, pretty printing if configured.
+     *
+     * @return the ObjectWriter for results
+     */
+    protected ObjectWriter getWriter() {
+        ObjectWriter current = writer;
+        if (current == null) {
+            ObjectMapper mapper = getMapper();
+            current = compiled.isPrettyPrint() ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer();
+            writer = current;
+        }
+        return current;
+    }
+
+    /**
+     * Provides the reader for input documents.
+     *
+     * @return the ObjectReader for inputs
+     */
+    protected ObjectReader getReader() {
+        ObjectReader current = reader;
+        if (current == null) {
+            current = compiled.getNodeFactory() != null ? getMapper().reader(compiled.getNodeFactory()) : getMapper().reader();
+            reader = current;
+        }
+        return current;
+    }
+
+    /**
+     * Discards the reader and writer built from the mapper, to be called after the mapper was reconfigured.
+     */
+    protected void mapperChanged() {
+        reader = null;
+        writer = null;
+    }
+
+    /**
+     * Opens a file for reading, memory-mapped if configured.
+     *
+     * @param path the file to open
+     * @return the InputStream for the file
+     * @throws IOException if the file cannot be opened
+     */
+    private InputStream open(Path path) throws IOException {
+        return compiled.isMemoryMapFiles() ? MergerUtil.openMapped(path) : Files.newInputStream(path);
+    }
+
+    /**
+     * Converts a value to a tree with the given mapper, reporting conversion failures as they
+     * would have been reported when serializing the value to text.
+     *
+     * @param mapper the mapper to convert with
+     * @param value  the value to convert
+     * @return the JsonNode representing the value
+     * @throws JsonProcessingException if the value cannot be serialized
+     */
+    private JsonNode valueToTree(ObjectMapper mapper, Object value) throws JsonProcessingException {
+        try {
+            return mapper.valueToTree(value);
+        } catch (IllegalArgumentException e) {
+            if (e.getCause() instanceof JsonProcessingException)
+                throw (JsonProcessingException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the compiled rule index of the configuration.
+     *
+     * @return the compiled RuleIndex
+     */
+    protected RuleIndex ruleIndex() {
+        return compiled.getRuleIndex();
     }
 
     /**
      * Recursively merges two JsonNodes at the given path, applying merge rules.
      * Delegates to object or array merging as appropriate, or replaces scalar values.
      *
-     * @param path    the current JSON path for rule lookup
+     * @param context the state of the current merge
+     * @param cursor  the position in the rule index matching the current path
      * @param base    the base JsonNode
      * @param overlay the overlay JsonNode
      * @return the merged JsonNode
      */
-    private JsonNode mergeNodes(String path, JsonNode base, JsonNode overlay) {
-        MergeRule rule = config.findRule(path);
+    JsonNode mergeNodes(MergeContext context, RuleIndex.Node cursor, JsonNode base, JsonNode overlay) {
+        MergeRule rule = cursor.getRule();
+        if (context.isListening()) {
+            context.getListener().nodeVisited();
+            if (rule != null)
+                context.getListener().ruleMatched(context.path(), rule);
+        }
 
-        if (base.isObject() && overlay.isObject()) {
-            return mergeObjects(path, (ObjectNode) base, (ObjectNode) overlay, rule);
+        if (base == overlay && context.isStructuralSharing() && context.isIdempotent()) {
+            return overlay;
+        } else if (base.isObject() && overlay.isObject()) {
+            return mergeObjects(context, cursor, (ObjectNode) base, (ObjectNode) overlay, rule);
         } else if (base.isArray() && overlay.isArray()) {
-            return mergeArrays(path, (ArrayNode) base, (ArrayNode) overlay, rule);
+            return mergeArrays(context, cursor, (ArrayNode) base, (ArrayNode) overlay, rule);
         } else {
-            return overlay.deepCopy();
+            return context.copy(overlay);
         }
     }
 
@@ -109,46 +796,82 @@ public abstract class Merger {
      * Merges two ObjectNodes according to the specified strategy.
      * Supports REPLACE and MERGE strategies; merges fields recursively.
      *
-     * @param path    the current JSON path for rule lookup
+     * @param context the state of the current merge
+     * @param cursor  the position in the rule index matching the current path
      * @param base    the base ObjectNode
      * @param overlay the overlay ObjectNode
      * @param rule    the merge rule applicable at this path
      * @return the merged ObjectNode
      */
-    private ObjectNode mergeObjects(String path, ObjectNode base, ObjectNode overlay, MergeRule rule) {
-        ObjectNode result = getObjectNode();
-        Strategy strategy = rule != null ? rule.getStrategy() : config.getObjectStrategy();
+    private ObjectNode mergeObjects(MergeContext context, RuleIndex.Node cursor, ObjectNode base, ObjectNode overlay, MergeRule rule) {
+        ObjectNode result;
+        Strategy strategy = rule != null ? rule.getStrategy() : compiled.getObjectStrategy();
 
         if (strategy == Strategy.REPLACE) {
-            result = overlay.deepCopy();
+            result = context.copy(overlay);
         } else if (strategy == Strategy.MERGE) {
-            result = base.deepCopy();
-            Set<String> fields = MergerUtil.combineIterators(base.fieldNames(), overlay.fieldNames());
+            // Sized for the case of no common fields, so the result never rehashes
+            result = getObjectNode(base.size() + overlay.size());
+            // Wide objects merge their fields as fork-join tasks, filled into placeholders to keep the order
+            List<NodeTask> tasks = context.isParallel(base.size() + overlay.size()) ? new ArrayList<>() : null;
+            // With a listener, the fields of the root object are timed, inside their task when forked
+            boolean timed = context.isListening() && context.isRoot();
 
-            for (String field : fields) {
-                JsonNode baseVal = result.get(field);
+            // Fields keep their base order, fields only in the overlay are appended in overlay order
+            for (Map.Entry<String, JsonNode> entry : base.properties()) {
+                String field = entry.getKey();
+                JsonNode baseVal = entry.getValue();
                 JsonNode overlayVal = overlay.get(field);
-                String childPath = path.isEmpty() ? field : path + "." + field;
-                MergeRule childRule = config.findRule(childPath);
-                Strategy childStrategy = childRule != null ? childRule.getStrategy() : config.getObjectStrategy();
+                RuleIndex.Node childCursor = cursor.child(field);
+                MergeRule childRule = childCursor.getRule();
+                Strategy childStrategy = childRule != null ? childRule.getStrategy() : compiled.getObjectStrategy();
+                long start = timed ? System.nanoTime() : 0;
 
-                if (baseVal != null && overlayVal != null) { // Both exist
-                    if (childStrategy == Strategy.REPLACE) {
-                        result.set(field, overlayVal.deepCopy());
-                    } else if (childStrategy == Strategy.MERGE) {
-                        result.set(field, mergeNodes(childPath, baseVal, overlayVal));
-                    }
-                } else if (baseVal == null && overlayVal != null) { // field added
-                    result.set(field, overlayVal.deepCopy());
-                } else if (baseVal != null && overlayVal == null) { // field removed
+                if (overlayVal != null) { // Both exist
                     if (childStrategy == Strategy.REPLACE) {
-                        result.remove(field);
-                    } else if (childStrategy == Strategy.MERGE) {
-                        result.set(field, baseVal.deepCopy());
+                        ruleMatched(context, field, childRule);
+                        setCopy(context, tasks, result, field, overlayVal);
+                    } else if (childStrategy == Strategy.MERGE || childStrategy == Strategy.UNION) {
+                        if (tasks != null) {
+                            MergeContext forked = context.fork(field);
+                            result.putNull(field);
+                            tasks.add(new NodeTask(field, timed(forked, timed, field, () -> mergeNodes(forked, childCursor, baseVal, overlayVal))));
+                        } else {
+                            context.push(field);
+                            result.set(field, mergeNodes(context, childCursor, baseVal, overlayVal));
+                            context.pop();
+                        }
+                    } else {
+                        ruleMatched(context, field, childRule);
+                        setCopy(context, tasks, result, field, baseVal);
                     }
+                } else if (childStrategy != Strategy.REPLACE) { // field removed
+                    setCopy(context, tasks, result, field, baseVal);
+                } else {
+                    ruleMatched(context, field, childRule);
+                }
+
+                if (timed && tasks == null)
+                    context.getListener().topLevelFieldMerged(field, System.nanoTime() - start);
+            }
+
+            for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+                if (!base.has(entry.getKey())) { // field added
+                    long start = timed ? System.nanoTime() : 0;
+                    setCopy(context, tasks, result, entry.getKey(), entry.getValue());
+                    if (timed && tasks == null)
+                        context.getListener().topLevelFieldMerged(entry.getKey(), System.nanoTime() - start);
+                }
+            }
+
+            if (tasks != null) {
+                ForkJoinTask.invokeAll(tasks);
+                for (NodeTask task : tasks) {
+                    result.set(task.field, task.join());
                 }
             }
         } else {
+            String path = context.path();
             throw new StrategyException(String.format("Invalid strategy '%s' for object merge at path '%s'", strategy, path.isEmpty() ? "." : path));
         }
 
@@ -157,71 +880,184 @@ public abstract class Merger {
 
     /**
      * Merges two ArrayNodes according to the specified strategy.
-     * Supports REPLACE, APPEND, and MERGE (with key field) strategies.
+     * Supports REPLACE, APPEND, UNION, and MERGE (with key field) strategies.
      *
-     * @param path    the current JSON path for rule lookup
+     * @param context the state of the current merge
+     * @param cursor  the position in the rule index matching the current path
      * @param base    the base ArrayNode
      * @param overlay the overlay ArrayNode
      * @param rule    the merge rule applicable at this path
      * @return the merged ArrayNode
      */
-    private ArrayNode mergeArrays(String path, ArrayNode base, ArrayNode overlay, MergeRule rule) {
-        ArrayNode result = getArrayNode();
-        Strategy strategy = rule != null ? rule.getStrategy() : config.getArrayStrategy();
+    private ArrayNode mergeArrays(MergeContext context, RuleIndex.Node cursor, ArrayNode base, ArrayNode overlay, MergeRule rule) {
+        ArrayNode result;
+        Strategy strategy = rule != null ? rule.getStrategy() : compiled.getArrayStrategy();
+        if (context.isListening())
+            context.getListener().arrayMerged(context.path(), strategy, base.size(), overlay.size());
 
         if (strategy == Strategy.REPLACE) {
-            result = overlay.deepCopy();
+            result = context.copy(overlay);
         } else if (strategy == Strategy.APPEND) {
-            result.addAll(base);
-            result.addAll(overlay);
+            result = getArrayNode(base.size() + overlay.size());
+            for (JsonNode item : base) {
+                result.add(context.copy(item));
+            }
+            for (JsonNode item : overlay) {
+                result.add(context.copy(item));
+            }
+        } else if (strategy == Strategy.UNION) {
+            result = getArrayNode(base.size() + overlay.size());
+            // Elements keep the order they are first seen in, later duplicates are dropped
+            ArrayUnion union = new ArrayUnion(cursor.getKeyExtractor());
+            for (JsonNode item : base) {
+                if (union.add(item))
+                    result.add(context.copy(item));
+            }
+            for (JsonNode item : overlay) {
+                if (union.add(item))
+                    result.add(context.copy(item));
+            }
         } else if (strategy == Strategy.MERGE) {
             if (rule == null)
-                throw new StrategyException(String.format("Missing array merge rule for '%s'", path));
+                throw new StrategyException(String.format("Missing array merge rule for '%s'", context.path()));
 
             if (rule.getKeyField() == null)
-                throw new StrategyException(String.format("Missing keyField in array merge rule for '%s'", path));
+                throw new StrategyException(String.format("Missing keyField in array merge rule for '%s'", context.path()));
 
-            // Build up baseMap based on rule keyField
-            Map<String, JsonNode> baseMap = new LinkedHashMap<>();
-            for (JsonNode item : base) {
-                String key = getNestedValue(item, rule.getKeyField());
-                if (key != null)
-                    baseMap.put(key, item);
-            }
+            // Look up baseMap based on rule keyField, each base element is matched at most once
+            KeyExtractor keys = cursor.getKeyExtractor();
+            Map<Object, JsonNode> baseMap = context.keyIndex(keys, base);
+            Set<Object> matched = new HashSet<>(MergerUtil.mapCapacity(overlay.size()));
+
+            // Large arrays merge matched pairs as fork-join tasks, filled into placeholders to keep the order
+            List<NodeTask> tasks = context.isParallel(overlay.size()) ? new ArrayList<>() : null;
+            result = getArrayNode(overlay.size());
 
             // Add array element to result only if it exists in overlay
             // So elements that only exist in base will get removed in the result
             for (JsonNode item : overlay) {
-                String key = getNestedValue(item, rule.getKeyField());
-                if (key != null && baseMap.containsKey(key)) {
-                    result.add(mergeNodes(path, baseMap.get(key), item));
-                    baseMap.remove(key);
+                Object key = keys.extract(item);
+                JsonNode baseItem = key != null && matched.add(key) ? baseMap.get(key) : null;
+                if (baseItem != null) {
+                    if (tasks != null) {
+                        MergeContext forked = context.fork(null);
+                        tasks.add(new NodeTask(result.size(), () -> mergeNodes(forked, cursor, baseItem, item)));
+                        result.addNull();
+                    } else {
+                        context.enterElement();
+                        result.add(mergeNodes(context, cursor, baseItem, item));
+                        context.leaveElement();
+                    }
                 } else {
-                    result.add(item.deepCopy());
+                    result.add(context.copy(item));
+                }
+            }
+
+            if (tasks != null) {
+                ForkJoinTask.invokeAll(tasks);
+                for (NodeTask task : tasks) {
+                    result.set(task.index, task.join());
                 }
             }
+        } else {
+            result = getArrayNode();
         }
 
         return result;
     }
 
     /**
-     * Retrieves a nested string value from a JsonNode using a dot-separated path.
-     * Supports escaping dots inside quotes.
+     * Places a copy of a node into the result object, deferring deep copies of containers
+     * to a fork-join task when the object is merged in parallel.
+     *
+     * @param context the state of the current merge
+     * @param tasks   the pending tasks of a parallel object merge, or null
+     * @param result  the ObjectNode being built
+     * @param field   the field to set
+     * @param node    the node to copy
+     */
+    private void setCopy(MergeContext context, List<NodeTask> tasks, ObjectNode result, String field, JsonNode node) {
+        if (tasks != null && !context.isStructuralSharing() && node.isContainerNode()) {
+            result.putNull(field);
+            MergeContext forked = context.fork(field);
+            if (context.isListening()) {
+                tasks.add(new NodeTask(field, timed(forked, context.isRoot(), field, () -> forked.copy(node))));
+            } else {
+                tasks.add(new NodeTask(field, () -> forked.copy(node)));
+            }
+        } else if (context.isListening()) {
+            context.push(field);
+            result.set(field, context.copy(node));
+            context.pop();
+        } else {
+            result.set(field, context.copy(node));
+        }
+    }
+
+    /**
+     * Reports a rule that decided the strategy of a field which is not merged any further.
      *
-     * @param node       the JsonNode to query
-     * @param nestedPath the dot-separated path to the nested value
-     * @return the string value if found and is a value node; otherwise null
+     * @param context the state of the current merge
+     * @param field   the field the rule applies to
+     * @param rule    the rule, or null if the strategy is the configured default
      */
-    private String getNestedValue(JsonNode node, String nestedPath) {
-        String[] parts = nestedPath.split("\\.(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
-        JsonNode current = node;
-        for (String p : parts) {
-            if (current == null)
-                return null;
-            p = p.replaceAll("\"", "");
-            current = current.get(p);
+    private void ruleMatched(MergeContext context, String field, MergeRule rule) {
+        if (rule != null && context.isListening()) {
+            context.push(field);
+            context.getListener().ruleMatched(context.path(), rule);
+            context.pop();
+        }
+    }
+
+    /**
+     * Wraps the work of a forked task for a field of the root object so its time is reported.
+     *
+     * @param context the context of the task
+     * @param timed   whether the field should be timed
+     * @param field   the field computed by the task
+     * @param work    the work of the task
+     * @return the work, timed if requested
+     */
+    private static Supplier<JsonNode> timed(MergeContext context, boolean timed, String field, Supplier<JsonNode> work) {
+        if (!timed)
+            return work;
+        return () -> {
+            long start = System.nanoTime();
+            JsonNode node = work.get();
+            context.getListener().topLevelFieldMerged(field, System.nanoTime() - start);
+            return node;
+        };
+    }
+
+    /**
+     * A fork-join task computing one child of a merged container, remembering where the result belongs.
+     */
+    private static final class NodeTask extends RecursiveTask<JsonNode> {
+        private final String field;
+        private final int index;
+        private final Supplier<JsonNode> work;
+
+        NodeTask(Supplier<JsonNode> work) {
+            this(null, -1, work);
+        }
+
+        NodeTask(String field, Supplier<JsonNode> work) {
+            this(field, -1, work);
+        }
+
+        NodeTask(int index, Supplier<JsonNode> work) {
+            this(null, index, work);
+        }
+
+        private NodeTask(String field, int index, Supplier<JsonNode> work) {
+            this.field = field;
+            this.index = index;
+            this.work = work;
+        }
+
+        @Override
+        protected JsonNode compute() {
+            return work.get();
         }
-        return (current != null && current.isValueNode()) ? current.asText() : null;
     }
 }
@@ -0,0 +1,77 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A base document prepared for merging many overlays onto it. The base is parsed once, and the
+ * key index of every array merged by key is built once, so a merge only does work proportional
+ * to the overlay and the parts of the base it touches.
+ * <p>
+ * The base tree is never modified, so a PreparedBase may be used by any number of threads at once.
+ */
+public final class PreparedBase {
+
+    private final Merger merger;
+    private final JsonNode base;
+    private final Map<JsonNode, Map<Object, JsonNode>> keyIndexes = new IdentityHashMap<>();
+
+    PreparedBase(Merger merger, JsonNode base) {
+        this.merger = merger;
+        this.base = base;
+        index(merger.getConfig().getRuleIndex().root(), base);
+    }
+
+    /**
+     * Merges an overlay tree onto the base. With {@link MergeConfig#getStructuralSharing() structuralSharing}
+     * enabled the result shares nodes with the base and must not be modified.
+     *
+     * @param overlay the overlay JsonNode to merge on top of the base
+     * @return the merged JsonNode result
+     */
+    public JsonNode merge(JsonNode overlay) {
+        MergeContext context = new MergeContext(merger);
+        context.useKeyIndexes(keyIndexes);
+        return merger.merge(context, base, overlay);
+    }
+
+    /**
+     * Merges an overlay string onto the base.
+     *
+     * @param overlay the overlay JSON/YAML string to merge on top of the base
+     * @return the merged JSON/YAML string
+     * @throws JsonProcessingException if parsing or processing fails
+     */
+    public String merge(String overlay) throws JsonProcessingException {
+        // The result is only serialized, so it may share the nodes of the base
+        MergeContext context = new MergeContext(merger, true);
+        context.useKeyIndexes(keyIndexes);
+        JsonNode node = merger.merge(context, base, merger.getReader().readTree(overlay));
+
+        return merger.getWriter().writeValueAsString(node);
+    }
+
+    /**
+     * Walks the base like a merge would and indexes every array that is merged by key.
+     *
+     * @param cursor the position in the rule index matching the current path
+     * @param node   the base node at that position
+     */
+    private void index(RuleIndex.Node cursor, JsonNode node) {
+        if (node.isObject()) {
+            for (Map.Entry<String, JsonNode> entry : node.properties()) {
+                index(cursor.child(entry.getKey()), entry.getValue());
+            }
+        } else if (node.isArray()) {
+            MergeRule rule = cursor.getRule();
+            if (rule != null && rule.getStrategy() == Strategy.MERGE && cursor.getKeyExtractor() != null)
+                keyIndexes.put(node, cursor.getKeyExtractor().index(node));
+            for (JsonNode item : node) {
+                index(cursor, item);
+            }
+        }
+    }
+}
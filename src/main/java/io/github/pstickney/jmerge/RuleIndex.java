@@ -0,0 +1,442 @@
+package io.github.pstickney.jmerge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled, read-only index of {@link MergeRule}s keyed by their path.
+ * The index is built once from a rule list and answers lookups in constant time per path segment,
+ * independent of how many rules are configured.
+ * <p>
+ * Rule paths are dot-separated field names, where a segment may also be a wildcard:
+ * {@code *} matches any single field and {@code **} matches any number of fields, including none.
+ * Array elements share the path of their array, so {@code [*]} after a segment is accepted and ignored,
+ * e.g. {@code spec.containers[*].image} is the same as {@code spec.containers.image}.
+ * When several rules match a path, a rule without wildcards wins, otherwise the first one in the list.
+ * <p>
+ * The patterns are compiled into a deterministic automaton over path segments, so the merge engine
+ * can descend the index alongside the documents with {@link Node#child(String)} instead of building
+ * a path string for every field, doing one hash lookup per field however many rules there are.
+ * The states of the automaton are built as the documents reach them, so compiling takes time linear
+ * in the total length of the rule paths, and states for paths no document contains are never built.
+ */
+public final class RuleIndex {
+
+    private static final String ANY = "*";
+    private static final String DEEP = "**";
+
+    private final Node root;
+    private final boolean idempotent;
+
+    private RuleIndex(Node root, boolean idempotent) {
+        this.root = root;
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Compiles the given rules into an index.
+     *
+     * @param rules the rules to index, may be null
+     * @return the compiled RuleIndex
+     * @throws IllegalArgumentException if a rule path uses an array index other than {@code [*]}
+     */
+    public static RuleIndex compile(List<MergeRule> rules) {
+        List<Pattern> patterns = new ArrayList<>();
+        Set<String> exactPaths = new HashSet<>();
+        boolean idempotent = true;
+        if (rules != null) {
+            for (MergeRule rule : rules) {
+                if (rule.getPath() == null)
+                    continue;
+                // keep a private copy so later changes to the rule do not affect the index
+                MergeRule copy = new MergeRule(rule.getPath(), rule.getKeyField(), rule.getStrategy());
+                Pattern pattern = new Pattern(normalize(copy.getPath()), copy);
+                if (pattern.exact && !exactPaths.add(pattern.path))
+                    continue;
+                patterns.add(pattern);
+                idempotent &= copy.getStrategy() == Strategy.REPLACE || (copy.getStrategy() == Strategy.MERGE && copy.getKeyField() == null);
+            }
+        }
+        return new RuleIndex(new Automaton(patterns).build(), idempotent);
+    }
+
+    /**
+     * Removes the {@code [*]} array element markers from a rule path.
+     *
+     * @param path the rule path
+     * @return the path the rule applies to
+     * @throws IllegalArgumentException if the path uses an array index other than {@code [*]}
+     */
+    static String normalize(String path) {
+        if (path.indexOf('[') < 0 && path.indexOf(']') < 0)
+            return path;
+        String normalized = path.replace("[*]", "");
+        // elements of a root array: "[*].id" applies to "id"
+        if (path.startsWith("[*]") && normalized.startsWith("."))
+            normalized = normalized.substring(1);
+        if (normalized.indexOf('[') >= 0 || normalized.indexOf(']') >= 0)
+            throw new IllegalArgumentException(String.format("Only [*] is supported as array index in rule path '%s'", path));
+        return normalized;
+    }
+
+    /**
+     * Finds the merge rule that applies to the specified path.
+     *
+     * @param path the JSON path to look up
+     * @return the matching MergeRule if found, otherwise null
+     */
+    public MergeRule find(String path) {
+        String normalized = normalize(path);
+        return normalized.isEmpty() ? root.getRule() : root.child(normalized).getRule();
+    }
+
+    /**
+     * Returns the automaton state for the document root (the empty path).
+     *
+     * @return the root Node
+     */
+    public Node root() {
+        return root;
+    }
+
+    /**
+     * Checks whether merging a subtree with itself is guaranteed to yield the same subtree under these rules.
+     * This holds when no rule appends to or key-merges an array.
+     *
+     * @return true if every rule is idempotent
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * A state of the rule automaton, standing for every path that leads to it. Descending with
+     * {@link #child(String)} is equivalent to appending {@code "." + field} to the path string,
+     * including fields that themselves contain dots. Once no rule can match below a position,
+     * the shared {@link #NONE} node is returned.
+     * <p>
+     * The transitions of a state are built the first time it is reached and are kept from then on,
+     * so a Node may be shared by any number of threads.
+     */
+    public static final class Node {
+
+        /**
+         * The node below which no rule exists.
+         */
+        public static final Node NONE = new Node(null, new int[0], false);
+
+        private final Automaton automaton;
+        private final int[] positions;
+        private final boolean isRoot;
+        private volatile Transitions transitions;
+
+        private Node(Automaton automaton, int[] positions, boolean isRoot) {
+            this.automaton = automaton;
+            this.positions = positions;
+            this.isRoot = isRoot;
+        }
+
+        /**
+         * Returns the rule that applies at this position.
+         *
+         * @return the MergeRule, or null if no rule applies here
+         */
+        public MergeRule getRule() {
+            return this == NONE ? null : transitions().rule;
+        }
+
+        /**
+         * Returns the compiled accessor for the keyField of the rule that applies at this position.
+         *
+         * @return the KeyExtractor, or null if there is no rule or it has no keyField
+         */
+        KeyExtractor getKeyExtractor() {
+            return this == NONE ? null : transitions().keyExtractor;
+        }
+
+        /**
+         * Descends to the position of the given child field.
+         *
+         * @param field the field name
+         * @return the child Node, or {@link #NONE} if no rule exists at or below it
+         */
+        public Node child(String field) {
+            if (this == NONE)
+                return NONE;
+            if (isRoot && field.isEmpty())
+                return this;
+            if (field.indexOf('.') < 0)
+                return step(field);
+
+            Node current = this;
+            int start = 0;
+            while (current != NONE) {
+                int end = field.indexOf('.', start);
+                if (end < 0)
+                    return current.step(field.substring(start));
+                current = current.step(field.substring(start, end));
+                start = end + 1;
+            }
+            return NONE;
+        }
+
+        private Node step(String segment) {
+            Transitions current = transitions();
+            Object next = current.literals.get(segment);
+            if (next == null) {
+                Node other = current.other;
+                return other != null ? other : automaton.other(current);
+            }
+            return next instanceof Node ? (Node) next : automaton.child(current, segment, (int[]) next);
+        }
+
+        private Transitions transitions() {
+            Transitions current = transitions;
+            return current != null ? current : automaton.expand(this);
+        }
+    }
+
+    /**
+     * The transitions out of a state: for every literal segment that can follow, the positions it
+     * advances to until the target Node is first needed and the Node from then on, and the positions
+     * reached by any other field.
+     */
+    private static final class Transitions {
+        private final MergeRule rule;
+        private final KeyExtractor keyExtractor;
+        private final Map<String, Object> literals;
+        private final int[] otherPositions;
+        private volatile Node other;
+
+        Transitions(Pattern winner, Map<String, Object> literals, int[] otherPositions) {
+            this.rule = winner != null ? winner.rule : null;
+            this.keyExtractor = winner != null ? winner.keyExtractor : null;
+            this.literals = literals;
+            this.otherPositions = otherPositions;
+        }
+    }
+
+    /**
+     * A rule path split into segments.
+     */
+    private static final class Pattern {
+        private final String path;
+        private final String[] segments;
+        private final MergeRule rule;
+        private final KeyExtractor keyExtractor;
+        private final boolean exact;
+
+        Pattern(String path, MergeRule rule) {
+            this.path = path;
+            this.segments = path.isEmpty() ? new String[0] : path.split("\\.", -1);
+            this.rule = rule;
+            this.keyExtractor = rule.getKeyField() != null ? KeyExtractor.compile(rule.getKeyField()) : null;
+            boolean exact = true;
+            for (String segment : segments) {
+                exact &= !ANY.equals(segment) && !DEEP.equals(segment);
+            }
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * Builds the deterministic automaton by subset construction, one state at a time as the states are reached.
+     * A position of the nondeterministic automaton is a pattern and the number of its segments matched so far;
+     * a Node stands for the sorted set of positions reachable by a path. Expanding a state walks its positions
+     * once, grouping them by the literal segment they expect next, so compiling is linear in the total length
+     * of the rule paths and each state costs time proportional to its positions when it is first reached.
+     */
+    private static final class Automaton {
+        private final List<Pattern> patterns;
+        private final int[] offsets;
+        private final int[] patternOf;
+        private final Map<Positions, Node> states = new HashMap<>();
+
+        Automaton(List<Pattern> patterns) {
+            this.patterns = patterns;
+            this.offsets = new int[patterns.size() + 1];
+            for (int i = 0; i < patterns.size(); i++) {
+                offsets[i + 1] = offsets[i] + patterns.get(i).segments.length + 1;
+            }
+            this.patternOf = new int[offsets[patterns.size()]];
+            for (int i = 0; i < patterns.size(); i++) {
+                for (int id = offsets[i]; id < offsets[i + 1]; id++) {
+                    patternOf[id] = i;
+                }
+            }
+        }
+
+        Node build() {
+            Positions.Builder start = new Positions.Builder();
+            for (int i = 0; i < patterns.size(); i++) {
+                add(start, i, 0);
+            }
+            // The root is never shared with another state, as only the root maps the empty field to itself
+            return new Node(this, start.build(), true);
+        }
+
+        /**
+         * Builds the transitions of a state in one pass over its positions.
+         */
+        synchronized Transitions expand(Node node) {
+            if (node.transitions != null)
+                return node.transitions;
+
+            Pattern winner = null;
+            Positions.Builder other = new Positions.Builder();
+            Map<String, Positions.Builder> literals = new HashMap<>();
+            for (int id : node.positions) {
+                int p = patternOf[id];
+                Pattern pattern = patterns.get(p);
+                int index = id - offsets[p];
+                if (index == pattern.segments.length) {
+                    if (winner == null || (pattern.exact && !winner.exact))
+                        winner = pattern;
+                    continue;
+                }
+                String segment = pattern.segments[index];
+                if (DEEP.equals(segment)) {
+                    add(other, p, index);
+                } else if (ANY.equals(segment)) {
+                    add(other, p, index + 1);
+                } else {
+                    Positions.Builder moved = literals.get(segment);
+                    if (moved == null) {
+                        moved = new Positions.Builder();
+                        literals.put(segment, moved);
+                    }
+                    add(moved, p, index + 1);
+                }
+            }
+
+            Map<String, Object> moves = new ConcurrentHashMap<>(Math.max(16, literals.size() * 2));
+            for (Map.Entry<String, Positions.Builder> entry : literals.entrySet()) {
+                moves.put(entry.getKey(), entry.getValue().build());
+            }
+            Transitions transitions = new Transitions(winner, moves, other.build());
+            node.transitions = transitions;
+            return transitions;
+        }
+
+        /**
+         * Returns the state reached by a literal segment: the positions the literal advances to together
+         * with those any field advances to.
+         */
+        synchronized Node child(Transitions transitions, String segment, int[] moved) {
+            Object current = transitions.literals.get(segment);
+            if (current instanceof Node)
+                return (Node) current;
+            Node node = state(Positions.union(moved, transitions.otherPositions));
+            transitions.literals.put(segment, node);
+            return node;
+        }
+
+        /**
+         * Returns the state reached by a field that is not a literal segment of any position.
+         */
+        synchronized Node other(Transitions transitions) {
+            if (transitions.other == null)
+                transitions.other = state(transitions.otherPositions);
+            return transitions.other;
+        }
+
+        private Node state(int[] positions) {
+            if (positions.length == 0)
+                return Node.NONE;
+            Positions key = new Positions(positions);
+            Node node = states.get(key);
+            if (node == null) {
+                node = new Node(this, positions, false);
+                states.put(key, node);
+            }
+            return node;
+        }
+
+        /**
+         * Adds a position and, while it is at a {@code **} segment, the positions skipping it.
+         */
+        private void add(Positions.Builder positions, int pattern, int index) {
+            String[] segments = patterns.get(pattern).segments;
+            positions.add(offsets[pattern] + index);
+            while (index < segments.length && DEEP.equals(segments[index])) {
+                index++;
+                positions.add(offsets[pattern] + index);
+            }
+        }
+    }
+
+    /**
+     * A set of positions as a sorted array without duplicates, compared by content to find equal states.
+     */
+    private static final class Positions {
+        private final int[] ids;
+        private final int hash;
+
+        Positions(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Positions && Arrays.equals(ids, ((Positions) o).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Merges two sorted sets of positions.
+         */
+        static int[] union(int[] a, int[] b) {
+            int[] result = new int[a.length + b.length];
+            int i = 0, j = 0, size = 0;
+            while (i < a.length || j < b.length) {
+                int next;
+                if (j == b.length || (i < a.length && a[i] < b[j])) {
+                    next = a[i++];
+                } else if (i == a.length || b[j] < a[i]) {
+                    next = b[j++];
+                } else {
+                    next = a[i++];
+                    j++;
+                }
+                result[size++] = next;
+            }
+            return size == result.length ? result : Arrays.copyOf(result, size);
+        }
+
+        /**
+         * Collects positions in any order, possibly repeated.
+         */
+        static final class Builder {
+            private int[] ids = new int[4];
+            private int size;
+
+            void add(int id) {
+                if (size == ids.length)
+                    ids = Arrays.copyOf(ids, size * 2);
+                ids[size++] = id;
+            }
+
+            int[] build() {
+                int[] sorted = Arrays.copyOf(ids, size);
+                Arrays.sort(sorted);
+                int unique = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i == 0 || sorted[i] != sorted[i - 1])
+                        sorted[unique++] = sorted[i];
+                }
+                return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+            }
+        }
+    }
+}
@@ -3,5 +3,6 @@ package io.github.pstickney.jmerge;
 public enum Strategy {
     MERGE,
     APPEND,
-    REPLACE
+    REPLACE,
+    UNION
 }
@@ -0,0 +1,263 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.pstickney.jmerge.exception.StrategyException;
+import io.github.pstickney.jmerge.util.MergerUtil;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges a base document read token by token from a {@link JsonParser} with an overlay tree,
+ * writing the result straight to a {@link JsonGenerator}. Only the overlay is held in memory,
+ * plus the base elements of keyed arrays whose key also occurs in the overlay, so memory use
+ * is proportional to the overlay and the nesting depth rather than to the base. With a
+ * {@link CompiledConfig#getSpillBudget() spillBudget}, those base elements beyond the budget
+ * are kept in a temporary file; the overlay itself always stays in memory.
+ * <p>
+ * The output is the same as serializing {@link Merger#merge(JsonNode, JsonNode)} of the two trees.
+ */
+final class StreamingMerge {
+
+    private final Merger merger;
+    private final CompiledConfig config;
+    private final MergeContext context;
+    private final ObjectMapper mapper;
+    private final ObjectWriter nodeWriter;
+
+    StreamingMerge(Merger merger, CompiledConfig config, MergeContext context, ObjectMapper mapper) {
+        this.merger = merger;
+        this.config = config;
+        this.context = context;
+        this.mapper = mapper;
+        this.nodeWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Merges the next value of the base parser with the overlay.
+     *
+     * @param base      the parser positioned before or at the first token of the base value
+     * @param overlay   the overlay JsonNode
+     * @param generator the generator to write the merged value to
+     * @throws IOException if reading or writing fails
+     */
+    void merge(JsonParser base, JsonNode overlay, JsonGenerator generator) throws IOException {
+        if (!base.hasCurrentToken() && base.nextToken() == null) {
+            // An empty base document reads as a missing node, which the overlay replaces
+            write(generator, overlay);
+            return;
+        }
+        mergeValue(context.getRules().root(), base, overlay, generator);
+    }
+
+    private void mergeValue(RuleIndex.Node cursor, JsonParser base, JsonNode overlay, JsonGenerator generator) throws IOException {
+        JsonToken token = base.currentToken();
+        if (token == JsonToken.START_OBJECT && overlay.isObject()) {
+            mergeObject(cursor, base, (ObjectNode) overlay, generator);
+        } else if (token == JsonToken.START_ARRAY && overlay.isArray()) {
+            mergeArray(cursor, base, (ArrayNode) overlay, generator);
+        } else {
+            base.skipChildren();
+            write(generator, overlay);
+        }
+    }
+
+    private void mergeObject(RuleIndex.Node cursor, JsonParser base, ObjectNode overlay, JsonGenerator generator) throws IOException {
+        MergeRule rule = cursor.getRule();
+        Strategy strategy = rule != null ? rule.getStrategy() : config.getObjectStrategy();
+
+        if (strategy == Strategy.REPLACE) {
+            base.skipChildren();
+            write(generator, overlay);
+            return;
+        } else if (strategy != Strategy.MERGE) {
+            String path = context.path();
+            throw new StrategyException(String.format("Invalid strategy '%s' for object merge at path '%s'", strategy, path.isEmpty() ? "." : path));
+        }
+
+        generator.writeStartObject();
+        // Allocated on the first field the base and overlay have in common
+        Set<String> matched = null;
+        while (base.nextToken() == JsonToken.FIELD_NAME) {
+            String field = base.currentName();
+            base.nextToken();
+            JsonNode overlayVal = overlay.get(field);
+            RuleIndex.Node childCursor = cursor.child(field);
+            MergeRule childRule = childCursor.getRule();
+            Strategy childStrategy = childRule != null ? childRule.getStrategy() : config.getObjectStrategy();
+
+            if (overlayVal != null) { // Both exist
+                if (matched == null)
+                    matched = new HashSet<>(MergerUtil.mapCapacity(overlay.size()));
+                matched.add(field);
+                generator.writeFieldName(field);
+                if (childStrategy == Strategy.REPLACE) {
+                    base.skipChildren();
+                    write(generator, overlayVal);
+                } else if (childStrategy == Strategy.MERGE || childStrategy == Strategy.UNION) {
+                    context.push(field);
+                    mergeValue(childCursor, base, overlayVal, generator);
+                    context.pop();
+                } else {
+                    generator.copyCurrentStructure(base);
+                }
+            } else if (childStrategy != Strategy.REPLACE) { // field removed
+                generator.writeFieldName(field);
+                generator.copyCurrentStructure(base);
+            } else {
+                base.skipChildren();
+            }
+        }
+
+        if (matched == null || matched.size() < overlay.size()) {
+            for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+                if (matched == null || !matched.contains(entry.getKey())) { // field added
+                    generator.writeFieldName(entry.getKey());
+                    write(generator, entry.getValue());
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private void mergeArray(RuleIndex.Node cursor, JsonParser base, ArrayNode overlay, JsonGenerator generator) throws IOException {
+        MergeRule rule = cursor.getRule();
+        Strategy strategy = rule != null ? rule.getStrategy() : config.getArrayStrategy();
+        // The size of the base array is only known once it has been read, so it is reported then
+        int baseSize = 0;
+
+        if (strategy == Strategy.REPLACE) {
+            arrayMerged(strategy, skipElements(base), overlay.size());
+            write(generator, overlay);
+        } else if (strategy == Strategy.APPEND) {
+            generator.writeStartArray();
+            while (base.nextToken() != JsonToken.END_ARRAY) {
+                generator.copyCurrentStructure(base);
+                baseSize++;
+            }
+            arrayMerged(strategy, baseSize, overlay.size());
+            for (JsonNode item : overlay) {
+                write(generator, item);
+            }
+            generator.writeEndArray();
+        } else if (strategy == Strategy.UNION) {
+            ArrayUnion union = new ArrayUnion(cursor.getKeyExtractor());
+            generator.writeStartArray();
+            while (base.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode item = mapper.readTree(base);
+                if (union.add(item))
+                    write(generator, item);
+                baseSize++;
+            }
+            arrayMerged(strategy, baseSize, overlay.size());
+            for (JsonNode item : overlay) {
+                if (union.add(item))
+                    write(generator, item);
+            }
+            generator.writeEndArray();
+        } else if (strategy == Strategy.MERGE) {
+            if (rule == null)
+                throw new StrategyException(String.format("Missing array merge rule for '%s'", context.path()));
+
+            if (rule.getKeyField() == null)
+                throw new StrategyException(String.format("Missing keyField in array merge rule for '%s'", context.path()));
+
+            KeyExtractor keys = cursor.getKeyExtractor();
+            Set<Object> overlayKeys = new HashSet<>(MergerUtil.mapCapacity(overlay.size()));
+            for (JsonNode item : overlay) {
+                Object key = keys.extract(item);
+                if (key != null)
+                    overlayKeys.add(key);
+            }
+
+            // Only base elements the overlay refers to are kept, all others are dropped from the result.
+            // Beyond the spill budget they are kept in a temporary file instead of in memory.
+            long budget = config.getSpillBudget();
+            try (KeyedSpill baseMap = new KeyedSpill(mapper, budget)) {
+                while (base.nextToken() != JsonToken.END_ARRAY) {
+                    JsonLocation start = budget > 0 ? base.currentTokenLocation() : null;
+                    JsonNode item = mapper.readTree(base);
+                    Object key = keys.extract(item);
+                    if (key != null && overlayKeys.contains(key))
+                        baseMap.put(key, item, budget > 0 ? encodedSize(start, base.currentLocation(), item) : 0);
+                    baseSize++;
+                }
+                arrayMerged(strategy, baseSize, overlay.size());
+
+                generator.writeStartArray();
+                for (JsonNode item : overlay) {
+                    Object key = keys.extract(item);
+                    JsonNode baseItem = key != null ? baseMap.remove(key) : null;
+                    if (baseItem != null) {
+                        context.enterElement();
+                        write(generator, merger.mergeNodes(context, cursor, baseItem, item));
+                        context.leaveElement();
+                    } else {
+                        write(generator, item);
+                    }
+                }
+                generator.writeEndArray();
+            }
+        } else {
+            arrayMerged(strategy, skipElements(base), overlay.size());
+            generator.writeStartArray();
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Skips the rest of the base array, counting its elements only if a listener needs them.
+     *
+     * @param base the parser positioned at the start of the base array
+     * @return the number of elements skipped, or 0 if they were not counted
+     */
+    private int skipElements(JsonParser base) throws IOException {
+        if (!context.isListening()) {
+            base.skipChildren();
+            return 0;
+        }
+        int size = 0;
+        while (base.nextToken() != JsonToken.END_ARRAY) {
+            base.skipChildren();
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size of an element as it was read, in bytes, or in characters for text read from a Reader.
+     * Parsers that do not track their offsets, such as those of token buffers, have the element encoded to measure it.
+     *
+     * @param start the location of the first token of the element
+     * @param end   the location after its last token
+     * @param item  the element
+     * @return the encoded size of the element
+     */
+    private long encodedSize(JsonLocation start, JsonLocation end, JsonNode item) throws IOException {
+        if (start.getByteOffset() >= 0 && end.getByteOffset() >= 0)
+            return end.getByteOffset() - start.getByteOffset();
+        if (start.getCharOffset() >= 0 && end.getCharOffset() >= 0)
+            return end.getCharOffset() - start.getCharOffset();
+        return mapper.writeValueAsBytes(item).length;
+    }
+
+    private void arrayMerged(Strategy strategy, int baseSize, int overlaySize) {
+        if (context.isListening())
+            context.getListener().arrayMerged(context.path(), strategy, baseSize, overlaySize);
+    }
+
+    private void write(JsonGenerator generator, JsonNode node) throws IOException {
+        nodeWriter.writeValue(generator, node);
+    }
+}
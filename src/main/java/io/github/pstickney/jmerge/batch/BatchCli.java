@@ -0,0 +1,96 @@
+package io.github.pstickney.jmerge.batch;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command-line entry point of the {@link BatchMerger}.
+ *
+ * <pre>
+ * java -cp jmerge.jar io.github.pstickney.jmerge.batch.BatchCli (--dir &lt;dir&gt; --out &lt;dir&gt; | --manifest &lt;file&gt;)
+ *     [--threads &lt;n&gt;] [--max-in-flight &lt;n&gt;]
+ * </pre>
+ * <p>
+ * Failed items are printed to standard error as they occur and the summary to standard output.
+ * The exit status is 0 if all items were merged, 1 if any failed and 2 for invalid arguments.
+ */
+public final class BatchCli {
+
+    private static final String USAGE = "Usage: BatchCli (--dir <dir> --out <dir> | --manifest <file>) [--threads <n>] [--max-in-flight <n>]";
+
+    private BatchCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs a batch with the given command-line arguments.
+     *
+     * @param args the command-line arguments
+     * @param out  the stream for the summary
+     * @param err  the stream for failures and usage errors
+     * @return the exit status
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        Path dir = null;
+        Path outputDir = null;
+        Path manifest = null;
+        BatchMerger.BatchMergerBuilder builder = BatchMerger.builder();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException(String.format("Missing value for '%s'", option));
+                String value = args[++i];
+                switch (option) {
+                    case "--dir":
+                        dir = Paths.get(value);
+                        break;
+                    case "--out":
+                        outputDir = Paths.get(value);
+                        break;
+                    case "--manifest":
+                        manifest = Paths.get(value);
+                        break;
+                    case "--threads":
+                        builder.threads(Integer.parseInt(value));
+                        break;
+                    case "--max-in-flight":
+                        builder.maxInFlight(Integer.parseInt(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option '%s'", option));
+                }
+            }
+            if ((dir == null) == (manifest == null) || (dir != null && outputDir == null))
+                throw new IllegalArgumentException("Either --dir with --out or --manifest is required");
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        BatchMerger batch = builder
+            .listener(result -> {
+                if (!result.isSuccess())
+                    err.println(String.format("FAILED %s: %s", result.getItem().getName(), result.getError()));
+            })
+            .build();
+        try {
+            BatchSummary summary = dir != null ? batch.run(dir, outputDir) : batch.run(BatchItem.readManifest(manifest));
+            out.println(summary);
+            return summary.getFailed() == 0 ? 0 : 1;
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Interrupted");
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.pstickney.jmerge.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A pair of base and overlay files to merge into an output file, with an optional config file.
+ * The format of all files follows the extension of the base: {@code .yaml} or {@code .yml} for YAML, JSON otherwise.
+ */
+@Value
+public class BatchItem {
+
+    private static final String[] EXTENSIONS = {"json", "yaml", "yml"};
+
+    String name;
+    Path base;
+    Path overlay;
+    Path config;
+    Path output;
+
+    /**
+     * Checks whether the files of this item are YAML documents.
+     *
+     * @return true for YAML, false for JSON
+     */
+    public boolean isYaml() {
+        return isYaml(base);
+    }
+
+    /**
+     * Lists the items of a directory laid out like the test scenarios: one folder per item holding
+     * {@code base.<ext>}, {@code overlay.<ext>} and optionally {@code config.<ext>}. The merged document
+     * of a folder is written to {@code <outputDir>/<folder>.<ext>}.
+     * <p>
+     * The folders are listed lazily, so the stream must be closed.
+     *
+     * @param dir       the directory holding one folder per item
+     * @param outputDir the directory to write the merged documents to
+     * @return the items, in no particular order
+     * @throws IOException if the directory cannot be listed
+     */
+    public static Stream<BatchItem> discover(Path dir, Path outputDir) throws IOException {
+        return Files.list(dir)
+            .filter(Files::isDirectory)
+            .map(folder -> {
+                String name = folder.getFileName().toString();
+                String extension = EXTENSIONS[0];
+                for (String candidate : EXTENSIONS) {
+                    if (Files.exists(folder.resolve("base." + candidate))) {
+                        extension = candidate;
+                        break;
+                    }
+                }
+                Path config = folder.resolve("config." + extension);
+                return new BatchItem(name, folder.resolve("base." + extension), folder.resolve("overlay." + extension),
+                    Files.exists(config) ? config : null, outputDir.resolve(name + "." + extension));
+            });
+    }
+
+    /**
+     * Reads the items listed in a JSON or YAML manifest, an array of objects with the fields
+     * {@code base}, {@code overlay}, {@code output} and optionally {@code config} and {@code name}.
+     * Relative paths are resolved against the directory of the manifest.
+     *
+     * @param manifest the manifest file
+     * @return the items, in manifest order
+     * @throws IOException if the manifest cannot be read or an entry lacks a required field
+     */
+    public static List<BatchItem> readManifest(Path manifest) throws IOException {
+        ObjectMapper mapper = isYaml(manifest) ? new YAMLMapper() : new ObjectMapper();
+        JsonNode entries = mapper.readTree(manifest.toFile());
+        if (entries == null || !entries.isArray())
+            throw new IOException(String.format("Manifest '%s' must be an array of items", manifest));
+
+        Path dir = manifest.toAbsolutePath().getParent();
+        List<BatchItem> items = new ArrayList<>(entries.size());
+        for (JsonNode entry : entries) {
+            Path output = path(dir, entry, "output", manifest);
+            Path config = entry.hasNonNull("config") ? path(dir, entry, "config", manifest) : null;
+            String name = entry.hasNonNull("name") ? entry.get("name").asText() : output.getFileName().toString();
+            items.add(new BatchItem(name, path(dir, entry, "base", manifest), path(dir, entry, "overlay", manifest), config, output));
+        }
+        return items;
+    }
+
+    private static Path path(Path dir, JsonNode entry, String field, Path manifest) throws IOException {
+        JsonNode value = entry.get(field);
+        if (value == null || !value.isTextual())
+            throw new IOException(String.format("Missing %s in manifest '%s' entry %s", field, manifest, entry));
+        return dir.resolve(value.textValue());
+    }
+
+    private static boolean isYaml(Path path) {
+        String file = path.getFileName().toString();
+        return file.endsWith(".yaml") || file.endsWith(".yml");
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.pstickney.jmerge.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.github.pstickney.jmerge.JsonMerger;
+import io.github.pstickney.jmerge.MergeConfig;
+import io.github.pstickney.jmerge.Merger;
+import io.github.pstickney.jmerge.YamlMerger;
+import lombok.Builder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Merges many base and overlay file pairs concurrently, streaming each result to its output file.
+ * <p>
+ * Items are taken from their source only while fewer than {@code maxInFlight} are being merged, so a
+ * slow disk or executor holds back the listing instead of queueing up every item in memory. Each config
+ * file is read and compiled once and its Merger is shared by all items using it. A failing item is
+ * reported in its {@link BatchResult} and does not stop the run.
+ *
+ * <pre>{@code
+ * BatchMerger batch = BatchMerger.builder().threads(8).build();
+ * BatchSummary summary = batch.run(Paths.get("pairs"), Paths.get("out"));
+ * }</pre>
+ */
+@Builder
+public class BatchMerger {
+
+    /**
+     * The configuration of items without a config file.
+     */
+    @Builder.Default
+    private final MergeConfig config = new MergeConfig();
+    /**
+     * The number of worker threads, when no executor is given.
+     */
+    @Builder.Default
+    private final int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * The maximum number of items submitted and not yet completed, twice the threads if not positive.
+     */
+    @Builder.Default
+    private final int maxInFlight = 0;
+    /**
+     * The executor to merge on, which is not shut down by the run. A fixed pool of {@code threads} if null.
+     */
+    private final Executor executor;
+    /**
+     * Receives the result of every item as soon as it is done, called concurrently from the worker threads.
+     */
+    @Builder.Default
+    private final Consumer<BatchResult> listener = result -> {
+    };
+
+    private final ConcurrentMap<String, Merger> mergers = new ConcurrentHashMap<>();
+
+    /**
+     * Merges every item of a directory laid out as described in {@link BatchItem#discover(Path, Path)}.
+     *
+     * @param dir       the directory holding one folder per item
+     * @param outputDir the directory to write the merged documents to
+     * @return the summary of the run
+     * @throws IOException          if the directory cannot be listed
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers
+     */
+    public BatchSummary run(Path dir, Path outputDir) throws IOException, InterruptedException {
+        try (Stream<BatchItem> items = BatchItem.discover(dir, outputDir)) {
+            return run(items.iterator());
+        }
+    }
+
+    /**
+     * Merges the given items.
+     *
+     * @param items the items to merge
+     * @return the summary of the run
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers
+     */
+    public BatchSummary run(Iterable<BatchItem> items) throws InterruptedException {
+        return run(items.iterator());
+    }
+
+    /**
+     * Merges the items of an iterator, which is advanced only as workers become free.
+     *
+     * @param items the items to merge
+     * @return the summary of the run
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers
+     */
+    public BatchSummary run(Iterator<BatchItem> items) throws InterruptedException {
+        int permits = maxInFlight > 0 ? maxInFlight : 2 * Math.max(1, threads);
+        ExecutorService pool = executor == null ? Executors.newFixedThreadPool(Math.max(1, threads)) : null;
+        Executor workers = executor != null ? executor : pool;
+        Semaphore inFlight = new Semaphore(permits);
+        Run run = new Run();
+
+        long start = System.nanoTime();
+        try {
+            while (items.hasNext()) {
+                BatchItem item = items.next();
+                inFlight.acquire();
+                try {
+                    workers.execute(() -> {
+                        try {
+                            run.record(merge(item));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    run.record(new BatchResult(item, e, 0, 0));
+                }
+            }
+            // Wait for the items still being merged
+            inFlight.acquire(permits);
+            inFlight.release(permits);
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+        return run.summary(System.nanoTime() - start);
+    }
+
+    private BatchResult merge(BatchItem item) {
+        long start = System.nanoTime();
+        try {
+            Path parent = item.getOutput().toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            merger(item).merge(item.getBase(), item.getOverlay(), item.getOutput());
+            return new BatchResult(item, null, System.nanoTime() - start, Files.size(item.getOutput()));
+        } catch (Exception e) {
+            return new BatchResult(item, e, System.nanoTime() - start, 0);
+        }
+    }
+
+    private Merger merger(BatchItem item) throws IOException {
+        boolean yaml = item.isYaml();
+        String key = (yaml ? "yaml:" : "json:") + (item.getConfig() != null ? item.getConfig().toAbsolutePath().normalize() : "");
+        try {
+            return mergers.computeIfAbsent(key, k -> {
+                MergeConfig itemConfig = item.getConfig() != null ? readConfig(item.getConfig(), yaml) : config;
+                return yaml ? new YamlMerger(itemConfig) : new JsonMerger(itemConfig);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static MergeConfig readConfig(Path path, boolean yaml) {
+        ObjectMapper mapper = yaml ? new YAMLMapper() : new ObjectMapper();
+        try {
+            return mapper.readValue(path.toFile(), MergeConfig.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The counters of one run, updated by the workers.
+     */
+    private final class Run {
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final List<BatchResult> failures = Collections.synchronizedList(new ArrayList<>());
+
+        void record(BatchResult result) {
+            if (result.isSuccess()) {
+                succeeded.increment();
+                bytes.add(result.getBytes());
+            } else {
+                failed.increment();
+                failures.add(result);
+            }
+            listener.accept(result);
+        }
+
+        BatchSummary summary(long nanos) {
+            return new BatchSummary(succeeded.sum(), failed.sum(), nanos, bytes.sum(), new ArrayList<>(failures));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.pstickney.jmerge.batch;
+
+import lombok.Value;
+
+/**
+ * The outcome of merging one {@link BatchItem}.
+ */
+@Value
+public class BatchResult {
+    BatchItem item;
+    Throwable error;
+    long nanos;
+    long bytes;
+
+    /**
+     * Checks whether the item was merged and written.
+     *
+     * @return true if the merge succeeded
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
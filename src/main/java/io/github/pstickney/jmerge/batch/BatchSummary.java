@@ -0,0 +1,43 @@
+package io.github.pstickney.jmerge.batch;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The totals of a {@link BatchMerger} run.
+ */
+@Value
+public class BatchSummary {
+    long succeeded;
+    long failed;
+    long nanos;
+    long bytes;
+    List<BatchResult> failures;
+
+    /**
+     * Returns the number of items processed.
+     *
+     * @return the succeeded and failed items
+     */
+    public long getTotal() {
+        return succeeded + failed;
+    }
+
+    /**
+     * Returns the number of items processed per second of wall-clock time.
+     *
+     * @return the throughput in items per second
+     */
+    public double getItemsPerSecond() {
+        return nanos == 0 ? 0 : getTotal() * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        double seconds = nanos / 1e9;
+        return String.format(Locale.ROOT, "Merged %d of %d items in %.3f s (%.1f items/s, %.2f MB/s written), %d failed",
+            succeeded, getTotal(), seconds, getItemsPerSecond(), seconds == 0 ? 0 : bytes / 1e6 / seconds, failed);
+    }
+}
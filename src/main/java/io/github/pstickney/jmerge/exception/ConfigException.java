@@ -0,0 +1,7 @@
+package io.github.pstickney.jmerge.exception;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class ConfigException extends RuntimeException {
+}
@@ -1,7 +1,18 @@
 package io.github.pstickney.jmerge.util;
 
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 public class MergerUtil {
@@ -15,4 +26,34 @@ public class MergerUtil {
         }
         return result;
     }
+
+    /**
+     * Returns the initial capacity of a hash map that holds the given number of entries without resizing.
+     *
+     * @param expectedSize the number of entries
+     * @return the initial capacity
+     */
+    public static int mapCapacity(int expectedSize) {
+        return expectedSize < 3 ? expectedSize + 1 : (int) Math.min(Integer.MAX_VALUE, (long) expectedSize * 4 / 3 + 1);
+    }
+
+    /**
+     * Opens a file as an InputStream over read-only memory mappings of its contents.
+     * Files larger than 2GB are mapped in several consecutive regions.
+     *
+     * @param path the file to open
+     * @return the InputStream reading the mapped file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static InputStream openMapped(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<InputStream> regions = new ArrayList<>();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                long length = Math.min(Integer.MAX_VALUE, size - position);
+                regions.add(new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, position, length)));
+            }
+            return new SequenceInputStream(Collections.enumeration(regions));
+        }
+    }
 }
@@ -0,0 +1,151 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncMergerTest {
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final YAMLMapper yamlMapper = new YAMLMapper();
+    private final SmileMapper smileMapper = new SmileMapper();
+
+    static Stream<Scenario> jsonScenarios() throws IOException {
+        return Scenario.discover("/scenarios", "json");
+    }
+
+    static Stream<Scenario> yamlScenarios() throws IOException {
+        return Scenario.discover("/scenarios", "yaml");
+    }
+
+    @AfterAll
+    static void shutdown() {
+        executor.shutdown();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("jsonScenarios")
+    void testJsonScenarios(Scenario scenario) throws Exception {
+        JsonMerger merger = new JsonMerger(config(mapper, scenario));
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        assertEquals(expected, feed(merger, utf8(scenario.getBase()), utf8(scenario.getOverlay()), 3), "Failed on " + scenario.getFolder());
+        assertEquals(scenario.getExpected().trim(), merger.mergeAsync(scenario.getBase().trim(), scenario.getOverlay().trim(), executor).get(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("yamlScenarios")
+    void testYamlScenarios(Scenario scenario) throws Exception {
+        // YAML has no non-blocking parser, so the chunks are collected and parsed once complete
+        YamlMerger merger = new YamlMerger(config(yamlMapper, scenario));
+        JsonNode expected = yamlMapper.readTree(scenario.getExpected());
+
+        assertEquals(expected, feed(merger, utf8(scenario.getBase()), utf8(scenario.getOverlay()), 5), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("jsonScenarios")
+    void testSmileScenarios(Scenario scenario) throws Exception {
+        MapperMerger merger = MapperMerger.smile(config(mapper, scenario));
+        byte[] base = smileMapper.writeValueAsBytes(mapper.readTree(scenario.getBase()));
+        byte[] overlay = smileMapper.writeValueAsBytes(mapper.readTree(scenario.getOverlay()));
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        assertEquals(expected, feed(merger, base, overlay, 2), "Failed on " + scenario.getFolder());
+        assertEquals(expected, smileMapper.readTree(merger.mergeAsync(base, overlay, executor).get()), "Failed on " + scenario.getFolder());
+    }
+
+    @Test
+    void testAsyncMerge() throws Exception {
+        JsonMerger merger = new JsonMerger();
+        AsyncMerge merge = merger.mergeAsync(executor);
+        byte[] chunk = new byte[8];
+
+        // The chunk array is reused, as a network read buffer would be
+        for (String part : new String[]{"{\"a\":", "1,\"b\"", ":[1]}"}) {
+            byte[] bytes = utf8(part);
+            System.arraycopy(bytes, 0, chunk, 0, bytes.length);
+            merge.feedBase(chunk, 0, bytes.length);
+        }
+        merge.feedOverlay(utf8("{\"b\":[2],\"c\":true}"));
+        merge.endOverlay();
+        assertFalse(merge.result().isDone());
+
+        merge.endBase();
+        assertEquals("{\"a\":1,\"b\":[1,2],\"c\":true}", new String(merge.resultBytes().get(5, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        assertThrows(IllegalStateException.class, () -> merge.feedBase(utf8("{}")));
+        assertThrows(IllegalStateException.class, merge::endOverlay);
+    }
+
+    @Test
+    void testEmptyBase() throws Exception {
+        AsyncMerge merge = new JsonMerger().mergeAsync(executor);
+        merge.endBase();
+        merge.feedOverlay(utf8("{\"a\":1}")).endOverlay();
+        assertEquals(mapper.readTree("{\"a\":1}"), merge.result().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testInvalidInput() throws Exception {
+        AsyncMerge merge = new JsonMerger().mergeAsync(executor);
+        assertThrows(IOException.class, () -> merge.feedBase(utf8("{\"a\":]")));
+        assertTrue(merge.result().isCompletedExceptionally());
+
+        // Chunks fed after a failure are ignored
+        merge.feedOverlay(utf8("{}")).endOverlay();
+
+        AsyncMerge incomplete = new JsonMerger().mergeAsync(executor);
+        incomplete.feedBase(utf8("{\"a\":"));
+        assertThrows(IOException.class, incomplete::endBase);
+
+        CompletableFuture<String> result = new JsonMerger().mergeAsync("{", "{}", executor);
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    /**
+     * Feeds both documents in chunks of the given size, alternating between them, and waits for the result.
+     */
+    private JsonNode feed(Merger merger, byte[] base, byte[] overlay, int chunkSize) throws Exception {
+        AsyncMerge merge = merger.mergeAsync(executor);
+        for (int offset = 0; offset < Math.max(base.length, overlay.length); offset += chunkSize) {
+            if (offset < base.length)
+                merge.feedBase(base, offset, Math.min(chunkSize, base.length - offset));
+            if (offset < overlay.length)
+                merge.feedOverlay(overlay, offset, Math.min(chunkSize, overlay.length - offset));
+        }
+        merge.endBase();
+        merge.endOverlay();
+        return merge.result().get(5, TimeUnit.SECONDS);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private MergeConfig config(ObjectMapper reader, Scenario scenario) throws IOException {
+        return scenario.getConfig() == null ? new MergeConfig() : reader.readValue(scenario.getConfig(), MergeConfig.class);
+    }
+}
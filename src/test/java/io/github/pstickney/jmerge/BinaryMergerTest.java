@@ -0,0 +1,80 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryMergerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SmileMapper smileMapper = new SmileMapper();
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    static Stream<Scenario> scenarios() throws IOException {
+        return Scenario.discover("/scenarios", "json");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testSmileScenarios(Scenario scenario) throws IOException {
+        MapperMerger merger = MapperMerger.smile(config(scenario));
+        assertMerges(scenario, merger, smileMapper);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testCborScenarios(Scenario scenario) throws IOException {
+        MapperMerger merger = MapperMerger.cbor(config(scenario));
+        assertMerges(scenario, merger, cborMapper);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testMapperScenarios(Scenario scenario) throws IOException {
+        MapperMerger merger = new MapperMerger(config(scenario), new SmileFactory());
+        assertMerges(scenario, merger, smileMapper);
+
+        // A text mapper merges strings like JsonMerger
+        MapperMerger jsonMerger = new MapperMerger(config(scenario), new ObjectMapper());
+        assertEquals(scenario.getExpected().trim(), jsonMerger.merge(scenario.getBase().trim(), scenario.getOverlay().trim()), "Failed on " + scenario.getFolder());
+    }
+
+    @Test
+    void testStrings() {
+        assertThrows(UnsupportedOperationException.class, () -> MapperMerger.smile(new MergeConfig()).merge("{}", "{}"));
+        assertThrows(UnsupportedOperationException.class, () -> MapperMerger.cbor(new MergeConfig()).merge("{}", "{}"));
+        assertThrows(UnsupportedOperationException.class, () -> new MapperMerger(new SmileFactory()).merge("{}", "{}"));
+    }
+
+    /**
+     * Encodes the scenario in the binary format and checks the merged bytes and streams decode to the expected document.
+     */
+    private void assertMerges(Scenario scenario, Merger merger, ObjectMapper binary) throws IOException {
+        byte[] base = binary.writeValueAsBytes(mapper.readTree(scenario.getBase()));
+        byte[] overlay = binary.writeValueAsBytes(mapper.readTree(scenario.getOverlay()));
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        assertEquals(expected, binary.readTree(merger.merge(base, overlay)), "Failed on " + scenario.getFolder());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        merger.merge(new ByteArrayInputStream(base), new ByteArrayInputStream(overlay), output);
+        assertEquals(expected, binary.readTree(output.toByteArray()), "Failed on " + scenario.getFolder());
+    }
+
+    private MergeConfig config(Scenario scenario) throws IOException {
+        return scenario.getConfig() == null ? new MergeConfig() : mapper.readValue(scenario.getConfig(), MergeConfig.class);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrossFormatMergerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final YAMLMapper yamlMapper = new YAMLMapper();
+
+    static Stream<Scenario> scenarios() throws IOException {
+        return Scenario.discover("/scenarios", "json");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        CrossFormatMerger merger = new CrossFormatMerger(config);
+        String base = yamlMapper.writeValueAsString(mapper.readTree(scenario.getBase()));
+        String overlay = scenario.getOverlay();
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        // YAML base with a JSON overlay, written as YAML and as JSON
+        assertEquals(expected, yamlMapper.readTree(merger.merge(base, DocumentFormat.YAML, overlay, DocumentFormat.JSON, DocumentFormat.YAML)), "Failed on " + scenario.getFolder());
+        assertEquals(scenario.getExpected().trim(), merger.merge(base, DocumentFormat.YAML, overlay, DocumentFormat.JSON, DocumentFormat.JSON), "Failed on " + scenario.getFolder());
+
+        // Binary base with a text overlay, written as another binary format
+        byte[] smileBase = new SmileMapper().writeValueAsBytes(mapper.readTree(scenario.getBase()));
+        byte[] merged = merger.merge(smileBase, DocumentFormat.SMILE, overlay.getBytes(StandardCharsets.UTF_8), DocumentFormat.JSON, DocumentFormat.CBOR);
+        assertEquals(expected, new CBORMapper().readTree(merged), "Failed on " + scenario.getFolder());
+    }
+
+    @Test
+    void testFiles(@TempDir Path dir) throws IOException {
+        Path base = dir.resolve("base.yaml");
+        Path overlay = dir.resolve("overlay.json");
+        Path output = dir.resolve("merged.yml");
+        Files.write(base, "a: 1\nb:\n  x: 3\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(overlay, "{\"b\":{\"z\":2},\"c\":4}".getBytes(StandardCharsets.UTF_8));
+
+        new CrossFormatMerger().merge(base, overlay, output);
+        assertEquals("---\na: 1\nb:\n  x: 3\n  z: 2\nc: 4\n", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBinaryStrings() {
+        CrossFormatMerger merger = new CrossFormatMerger();
+        assertTrue(DocumentFormat.SMILE.isBinary());
+        assertFalse(DocumentFormat.YAML.isBinary());
+        assertThrows(IllegalArgumentException.class, () -> merger.merge("{}", DocumentFormat.SMILE, "{}", DocumentFormat.JSON, DocumentFormat.JSON));
+        assertThrows(IllegalArgumentException.class, () -> merger.merge("{}", DocumentFormat.JSON, "{}", DocumentFormat.JSON, DocumentFormat.CBOR));
+    }
+
+    @Test
+    void testFormatOf() {
+        assertEquals(DocumentFormat.JSON, DocumentFormat.of(Paths.get("dir/a.json")));
+        assertEquals(DocumentFormat.YAML, DocumentFormat.of(Paths.get("a.YML")));
+        assertEquals(DocumentFormat.SMILE, DocumentFormat.of(Paths.get("a.sml")));
+        assertEquals(DocumentFormat.CBOR, DocumentFormat.of(Paths.get("a.cbor")));
+        assertThrows(IllegalArgumentException.class, () -> DocumentFormat.of(Paths.get("a.txt")));
+        assertThrows(IllegalArgumentException.class, () -> DocumentFormat.of(Paths.get("json")));
+    }
+
+    private MergeConfig config(Scenario scenario) throws IOException {
+        return scenario.getConfig() == null ? new MergeConfig() : mapper.readValue(scenario.getConfig(), MergeConfig.class);
+    }
+}
@@ -1,13 +1,38 @@
 package io.github.pstickney.jmerge;
 
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JsonMergerTest {
 
@@ -20,10 +45,389 @@ class JsonMergerTest {
     @ParameterizedTest(name = "{0}")
     @MethodSource("scenarios")
     void testScenarios(Scenario scenario) throws IOException {
-        MergeConfig config = scenario.getConfig() == null ? new MergeConfig() : mapper.readValue(scenario.getConfig(), MergeConfig.class);
+        MergeConfig config = config(scenario);
         JsonMerger merger = new JsonMerger(config);
         String merged = merger.merge(scenario.getBase().trim(), scenario.getOverlay().trim());
 
         assertEquals(scenario.getExpected().trim(), merged.trim(), "Failed on " + scenario.getFolder());
     }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testStreamingScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        StringWriter merged = new StringWriter();
+        merger.merge(new StringReader(scenario.getBase().trim()), new StringReader(scenario.getOverlay().trim()), merged);
+
+        assertEquals(scenario.getExpected().trim(), merged.toString().trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testByteScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        byte[] merged = merger.merge(scenario.getBase().trim().getBytes(StandardCharsets.UTF_8), scenario.getOverlay().trim().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(scenario.getExpected().trim(), new String(merged, StandardCharsets.UTF_8).trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testFileScenarios(Scenario scenario, @TempDir Path dir) throws IOException {
+        MergeConfig config = config(scenario);
+        config.setMemoryMapFiles(true);
+        JsonMerger merger = new JsonMerger(config);
+        Path base = Files.write(dir.resolve("base.json"), scenario.getBase().trim().getBytes(StandardCharsets.UTF_8));
+        Path overlay = Files.write(dir.resolve("overlay.json"), scenario.getOverlay().trim().getBytes(StandardCharsets.UTF_8));
+        Path merged = dir.resolve("merged.json");
+        merger.merge(base, overlay, merged);
+
+        assertEquals(scenario.getExpected().trim(), new String(Files.readAllBytes(merged), StandardCharsets.UTF_8).trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testPreparedScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        PreparedBase base = merger.prepare(scenario.getBase().trim());
+
+        // Merging twice checks that the prepared base is left untouched by a merge
+        for (int i = 0; i < 2; i++) {
+            String merged = base.merge(scenario.getOverlay().trim());
+            assertEquals(scenario.getExpected().trim(), merged.trim(), "Failed on " + scenario.getFolder());
+            JsonNode node = base.merge(mapper.readTree(scenario.getOverlay()));
+            assertEquals(mapper.readTree(scenario.getExpected()), node, "Failed on " + scenario.getFolder());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testSessionScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        JsonNode base = mapper.readTree(scenario.getBase());
+        JsonNode overlay = mapper.readTree(scenario.getOverlay());
+        MergeSession session = merger.session(base, overlay.isArray() ? mapper.createArrayNode() : mapper.createObjectNode());
+
+        // Build the overlay up child by child, then replace it with the base and back again
+        if (overlay.isArray()) {
+            for (int i = 0; i < overlay.size(); i++) {
+                session.set(JsonPointer.empty().appendIndex(i), overlay.get(i));
+            }
+        } else {
+            for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+                session.set(JsonPointer.empty().appendProperty(entry.getKey()), entry.getValue());
+            }
+        }
+        assertEquals(mapper.readTree(scenario.getExpected()), session.getResult(), "Failed on " + scenario.getFolder());
+        assertEquals(merger.merge(base, base), session.update(base), "Failed on " + scenario.getFolder());
+        assertEquals(mapper.readTree(scenario.getExpected()), session.update(overlay), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testCachingScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        CachingMerger merger = new CachingMerger(new JsonMerger(config), 16);
+
+        // The second round of merges must be served from the cache
+        for (int i = 0; i < 2; i++) {
+            String merged = merger.merge(scenario.getBase().trim(), scenario.getOverlay().trim());
+            assertEquals(scenario.getExpected().trim(), merged.trim(), "Failed on " + scenario.getFolder());
+            byte[] bytes = merger.merge(utf8(scenario.getBase()), utf8(scenario.getOverlay()));
+            assertEquals(mapper.readTree(scenario.getExpected()), mapper.readTree(bytes), "Failed on " + scenario.getFolder());
+        }
+        assertEquals(new CacheStats(2, 2, 0, 2), merger.getStats());
+
+        // Tree merges are not cached
+        JsonNode node = merger.merge(mapper.readTree(scenario.getBase()), mapper.readTree(scenario.getOverlay()));
+        assertEquals(mapper.readTree(scenario.getExpected()), node, "Failed on " + scenario.getFolder());
+        assertEquals(new CacheStats(2, 2, 0, 2), merger.getStats());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testSpillingScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        config.setSpillBudget(1L);
+        JsonMerger merger = new JsonMerger(config);
+        StringWriter merged = new StringWriter();
+        merger.merge(new StringReader(scenario.getBase().trim()), new StringReader(scenario.getOverlay().trim()), merged);
+
+        // Elements read as characters and as bytes are measured from the offsets of their parsers
+        assertEquals(scenario.getExpected().trim(), merged.toString().trim(), "Failed on " + scenario.getFolder());
+        assertEquals(scenario.getExpected().trim(), new String(merger.merge(utf8(scenario.getBase().trim()), utf8(scenario.getOverlay().trim())), StandardCharsets.UTF_8), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testDeltaScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        JsonNode base = mapper.readTree(scenario.getBase());
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        for (DeltaFormat format : DeltaFormat.values()) {
+            MergeDelta delta = merger.mergeWithDelta(base, mapper.readTree(scenario.getOverlay()), format);
+            assertEquals(expected, delta.getResult(), "Failed on " + scenario.getFolder());
+            assertEquals(expected, merger.applyDelta(base, delta.getPatch(), format), "Failed on " + scenario.getFolder());
+        }
+        assertEquals(mapper.readTree(scenario.getBase()), base, "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testViewScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        // Fields resolved one at a time match the merged tree, as does materializing what is left
+        MergedView view = merger.view(scenario.getBase(), scenario.getOverlay());
+        for (String field : view.fieldNames()) {
+            assertEquals(expected.get(field), view.get(field).materialize(), "Failed on " + scenario.getFolder());
+        }
+        assertEquals(expected, view.materialize(), "Failed on " + scenario.getFolder());
+        assertEquals(expected, merger.view(scenario.getBase(), scenario.getOverlay()).materialize(), "Failed on " + scenario.getFolder());
+    }
+
+    @Test
+    void testNodeFactory() throws IOException {
+        List<String> created = new ArrayList<>();
+        JsonNodeFactory factory = new JsonNodeFactory() {
+            @Override
+            public ObjectNode objectNode() {
+                created.add("object");
+                return super.objectNode();
+            }
+
+            @Override
+            public ArrayNode arrayNode(int capacity) {
+                created.add("array");
+                return super.arrayNode(capacity);
+            }
+        };
+        MergeConfig config = MergeConfig.builder().nodeFactory(factory).build();
+        JsonMerger merger = new JsonMerger(config);
+
+        // Inputs are read and results are built with the factory
+        assertEquals("{\"a\":{\"x\":1,\"y\":2},\"b\":[1,2],\"c\":{\"z\":3}}",
+            merger.merge("{\"a\":{\"x\":1},\"b\":[1]}", "{\"a\":{\"y\":2},\"b\":[2],\"c\":{\"z\":3}}"));
+        assertTrue(created.size() >= 7);
+        created.clear();
+        merger.merge(mapper.readTree("{\"a\":{\"x\":1},\"b\":[1]}"), mapper.readTree("{\"a\":{\"y\":2},\"b\":[2],\"c\":{\"z\":3}}"));
+        assertEquals(Arrays.asList("object", "object", "array", "object"), created);
+
+        // Subtrees copied by fork-join tasks are built with the factory too
+        JsonNodeFactory tagging = new JsonNodeFactory() {
+            @Override
+            public ObjectNode objectNode() {
+                return new TaggedObjectNode(this);
+            }
+        };
+        JsonMerger parallel = new JsonMerger(MergeConfig.builder().nodeFactory(tagging).parallel(true).parallelThreshold(1).build());
+        JsonNode result = parallel.merge(mapper.readTree("{\"a\":{\"x\":1}}"), mapper.readTree("{\"a\":{\"y\":2},\"c\":{\"z\":{\"w\":3}}}"));
+        assertInstanceOf(TaggedObjectNode.class, result.get("c"));
+        assertInstanceOf(TaggedObjectNode.class, result.get("c").get("z"));
+    }
+
+    @Test
+    void testContainerOverrides() throws IOException {
+        List<String> created = new ArrayList<>();
+        JsonMerger merger = new JsonMerger() {
+            @Override
+            protected ObjectNode getObjectNode() {
+                created.add("object");
+                return super.getObjectNode();
+            }
+
+            @Override
+            protected ArrayNode getArrayNode() {
+                created.add("array");
+                return super.getArrayNode();
+            }
+        };
+
+        // Overriding the unsized methods of a built-in Merger is enough to create every result container
+        merger.merge(mapper.readTree("{\"a\":{\"x\":1},\"b\":[1]}"), mapper.readTree("{\"a\":{\"y\":2},\"b\":[2],\"c\":{\"z\":3}}"));
+        assertEquals(Arrays.asList("object", "object", "array", "object"), created);
+    }
+
+    @Test
+    void testMinimalSubclass() throws IOException {
+        // A subclass implementing only the node and String methods reads and writes JSON through the default mapper
+        Merger merger = new Merger() {
+            @Override
+            public String merge(String base, String overlay) throws JsonProcessingException {
+                return getWriter().writeValueAsString(merge(getReader().readTree(base), getReader().readTree(overlay)));
+            }
+
+            @Override
+            protected ObjectNode getObjectNode() {
+                return new TaggedObjectNode(getNodeFactory());
+            }
+
+            @Override
+            protected ArrayNode getArrayNode() {
+                return getNodeFactory().arrayNode();
+            }
+        };
+
+        assertEquals("{\"a\":{\"x\":1,\"y\":2}}", merger.merge("{\"a\":{\"x\":1}}", "{\"a\":{\"y\":2}}"));
+        StringWriter output = new StringWriter();
+        merger.merge(new StringReader("{\"a\":[1]}"), new StringReader("{\"a\":[2]}"), output);
+        assertEquals("{\"a\":[1,2]}", output.toString());
+        assertInstanceOf(TaggedObjectNode.class, merger.merge(mapper.readTree("{\"a\":{}}"), mapper.readTree("{\"b\":{}}")).get("a"));
+    }
+
+    @Test
+    void testView() throws IOException {
+        MergeMetrics metrics = new MergeMetrics();
+        MergeConfig config = MergeConfig.builder().listener(metrics).build()
+            .addRule("r", Strategy.REPLACE);
+        JsonMerger merger = new JsonMerger(config);
+        MergedView view = merger.view("{\"a\":{\"x\":[1]},\"b\":{\"y\":[2]},\"r\":{\"k\":1}}", "{\"a\":{\"x\":[3]},\"b\":{\"y\":[4]}}");
+
+        // Only the array on the path is merged
+        assertEquals(mapper.readTree("[1,3]"), view.at("/a/x").materialize());
+        assertEquals(1, metrics.getNodesVisited());
+        assertEquals(3, view.at("/a/x/1").materialize().asInt());
+        assertEquals(1, metrics.getNodesVisited());
+
+        assertEquals(Arrays.asList("a", "b"), view.fieldNames());
+        assertNull(view.get("r"));
+        assertTrue(view.path("r").isMissingNode());
+        assertTrue(view.at("/a/x/5").isMissingNode());
+        assertEquals(mapper.readTree("{\"a\":{\"x\":[1,3]},\"b\":{\"y\":[2,4]}}"), view.materialize());
+        assertEquals(2, metrics.getNodesVisited());
+    }
+
+    @Test
+    void testCacheEviction() throws IOException {
+        MergeConfig config = new MergeConfig();
+        CachingMerger merger = new CachingMerger(new JsonMerger(config), 2);
+        merger.merge("{\"a\":1}", "{\"b\":1}");
+        merger.merge("{\"a\":2}", "{\"b\":2}");
+        merger.merge("{\"a\":1}", "{\"b\":1}");
+        merger.merge("{\"a\":3}", "{\"b\":3}");
+        assertEquals(new CacheStats(1, 3, 1, 2), merger.getStats());
+
+        // The least recently used merge was evicted, and the config was compiled at construction
+        merger.merge("{\"a\":1}", "{\"b\":1}");
+        merger.merge("{\"a\":2}", "{\"b\":2}");
+        config.setPrettyPrint(true);
+        assertEquals("{\"a\":1,\"b\":1}", merger.merge("{\"a\":1}", "{\"b\":1}"));
+        assertEquals(new CacheStats(3, 4, 2, 2), merger.getStats());
+    }
+
+    @Test
+    void testCacheCollisions() throws IOException {
+        CachingMerger merger = new CachingMerger(new JsonMerger(), 16);
+
+        // Objects with the same fields in another order merge differently
+        assertEquals("{\"a\":1,\"b\":2}", merger.merge("{\"a\":1,\"b\":2}", "{}"));
+        assertEquals("{\"b\":2,\"a\":1}", merger.merge("{\"b\":2,\"a\":1}", "{}"));
+        assertEquals(new CacheStats(0, 2, 0, 2), merger.getStats());
+
+        // Arrays changed after the merge, the input and the returned result alike, do not change the cached entry
+        byte[] base = utf8("{\"a\":1}");
+        byte[] merged = merger.merge(base, utf8("{}"));
+        base[5] = '2';
+        merged[5] = '3';
+        assertEquals("{\"a\":2}", new String(merger.merge(base, utf8("{}")), StandardCharsets.UTF_8));
+        assertEquals("{\"a\":1}", new String(merger.merge(utf8("{\"a\":1}"), utf8("{}")), StandardCharsets.UTF_8));
+        assertEquals(new CacheStats(1, 4, 0, 4), merger.getStats());
+    }
+
+    @Test
+    void testDelta() throws IOException {
+        MergeConfig config = MergeConfig.builder().structuralSharing(true).build()
+            .addRule("labels", Strategy.REPLACE);
+        JsonMerger merger = new JsonMerger(config);
+        String base = "{\"name\":\"app\",\"meta\":{\"uid\":1},\"labels\":{\"tier\":\"web\",\"team\":\"a\"},\"ports\":[80],\"spec\":{\"replicas\":1,\"image\":\"x\"}}";
+        String overlay = "{\"labels\":{\"team\":\"b\"},\"ports\":[443],\"spec\":{\"replicas\":2}}";
+
+        assertEquals("{\"labels\":{\"tier\":null,\"team\":\"b\"},\"ports\":[80,443],\"spec\":{\"replicas\":2}}",
+            merger.delta(base, overlay, DeltaFormat.MERGE_PATCH));
+        assertEquals("[{\"op\":\"remove\",\"path\":\"/labels/tier\"},{\"op\":\"replace\",\"path\":\"/labels/team\",\"value\":\"b\"},"
+                + "{\"op\":\"add\",\"path\":\"/ports/-\",\"value\":443},{\"op\":\"replace\",\"path\":\"/spec/replicas\",\"value\":2}]",
+            merger.delta(base, overlay, DeltaFormat.JSON_PATCH));
+
+        // Applying a patch copies only the containers it changes
+        JsonNode baseNode = mapper.readTree(base);
+        JsonNode patched = merger.applyDelta(baseNode, merger.delta(baseNode, mapper.readTree(overlay), DeltaFormat.JSON_PATCH), DeltaFormat.JSON_PATCH);
+        assertEquals(merger.merge(baseNode, mapper.readTree(overlay)), patched);
+        assertSame(baseNode.get("meta"), patched.get("meta"));
+        assertEquals(mapper.readTree(base), baseNode);
+
+        // Null values inside objects can only be expressed by a JSON Patch
+        assertThrows(IllegalArgumentException.class, () -> merger.delta("{\"a\":1}", "{\"a\":null}", DeltaFormat.MERGE_PATCH));
+        assertEquals("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":null}]", merger.delta("{\"a\":1}", "{\"a\":null}", DeltaFormat.JSON_PATCH));
+        assertEquals("{\"a\":1,\"b\":[2]}", merger.applyDelta("{\"a\":1}", "[{\"op\":\"add\",\"path\":\"/b\",\"value\":[]},{\"op\":\"add\",\"path\":\"/b/0\",\"value\":2}]", DeltaFormat.JSON_PATCH));
+        assertThrows(IllegalArgumentException.class, () -> merger.applyDelta("{\"a\":1}", "[{\"op\":\"remove\",\"path\":\"/b\"}]", DeltaFormat.JSON_PATCH));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testConcurrentScenarios(Scenario scenario) throws Exception {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // One shared merger, used from many threads while the original config keeps changing
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> merger.merge(scenario.getBase().trim(), scenario.getOverlay().trim())));
+                config.getRules().add(new MergeRule("unused" + i, null, Strategy.REPLACE));
+            }
+            for (Future<String> result : results) {
+                assertEquals(scenario.getExpected().trim(), result.get().trim(), "Failed on " + scenario.getFolder());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testLayeredScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        String base = scenario.getBase().trim();
+        String overlay = scenario.getOverlay().trim();
+        String folded = merger.merge(merger.merge(merger.merge(base, overlay), base), overlay);
+        String merged = merger.merge(base, Arrays.asList(overlay, base, overlay));
+
+        assertEquals(folded.trim(), merged.trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testObjectScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        JsonMerger merger = new JsonMerger(config);
+        Object base = mapper.readValue(scenario.getBase(), Object.class);
+        Object overlay = mapper.readValue(scenario.getOverlay(), Object.class);
+        Object merged = merger.merge(base, overlay, Object.class);
+
+        assertEquals(mapper.readValue(scenario.getExpected(), Object.class), merged, "Failed on " + scenario.getFolder());
+    }
+
+    private MergeConfig config(Scenario scenario) throws IOException {
+        return scenario.getConfig() == null ? new MergeConfig() : mapper.readValue(scenario.getConfig(), MergeConfig.class);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class TaggedObjectNode extends ObjectNode {
+
+        TaggedObjectNode(JsonNodeFactory factory) {
+            super(factory);
+        }
+    }
 }
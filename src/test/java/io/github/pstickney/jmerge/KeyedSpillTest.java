@@ -0,0 +1,173 @@
+package io.github.pstickney.jmerge;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedSpillTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testSpill() throws IOException {
+        try (KeyedSpill spill = new KeyedSpill(mapper, 40)) {
+            // The first two elements fill the budget, the third is the first to be spilled
+            for (int i = 0; i < 10; i++) {
+                spill.put(i, mapper.readTree(String.format("{\"id\":%d,\"v\":[%d]}", i, i * i)), 20);
+                assertEquals(i >= 2, spill.isSpilled());
+            }
+            // A later element replaces the spilled one with the same key
+            spill.put(7, mapper.readTree("{\"id\":7,\"v\":\"new\"}"), 20);
+
+            assertEquals(mapper.readTree("{\"id\":7,\"v\":\"new\"}"), spill.remove(7));
+            for (int i = 9; i >= 0; i--) {
+                if (i != 7)
+                    assertEquals(mapper.readTree(String.format("{\"id\":%d,\"v\":[%d]}", i, i * i)), spill.remove(i));
+            }
+            assertNull(spill.remove(3));
+        }
+
+        try (KeyedSpill spill = new KeyedSpill(mapper, 0)) {
+            spill.put("a", mapper.readTree("1"), Long.MAX_VALUE);
+            assertFalse(spill.isSpilled());
+        }
+    }
+
+    @Test
+    void testLargeKeyedArray() throws IOException {
+        StringBuilder base = new StringBuilder("{\"list\":[");
+        StringBuilder overlay = new StringBuilder("{\"list\":[");
+        for (int i = 0; i < 5000; i++) {
+            base.append(i > 0 ? "," : "").append(String.format("{\"id\":%d,\"a\":%d}", i, i));
+            overlay.append(i > 0 ? "," : "").append(String.format("{\"id\":%d,\"b\":%d}", 4999 - i * 2 % 5000, i));
+        }
+        base.append("]}");
+        overlay.append("]}");
+
+        MergeConfig config = MergeConfig.builder().spillBudget(2000L).build().addRule("list", "id");
+        JsonMerger merger = new JsonMerger(config);
+        StringWriter merged = new StringWriter();
+        merger.merge(new StringReader(base.toString()), new StringReader(overlay.toString()), merged);
+
+        // The order and content match the in-memory merge of the trees
+        assertEquals(merger.merge(base.toString(), overlay.toString()), merged.toString());
+    }
+
+    /**
+     * Forks two JVMs and takes several seconds, so it is left out of the unit tests and run with {@code -Pheap-tests}.
+     */
+    @Test
+    @Tag("heap")
+    void testBoundedHeap() throws Exception {
+        // The overlay patches every element of a base array that is more than twice the heap of the child JVM
+        assertEquals(HeapBound.WRITTEN, mergeInChildJvm("262144"));
+        assertEquals(HeapBound.OUT_OF_MEMORY, mergeInChildJvm("0"));
+    }
+
+    /**
+     * Runs {@link HeapBound} in a JVM with a fixed 32 MB heap and collector, unaffected by the
+     * options of the JVM running the tests, and returns its exit code.
+     */
+    private static int mergeInChildJvm(String spillBudget) throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Xms32m", "-Xmx32m", "-XX:+UseSerialGC", "-cp", System.getProperty("java.class.path"), HeapBound.class.getName(), spillBudget)
+            .inheritIO();
+        builder.environment().remove("JAVA_TOOL_OPTIONS");
+        builder.environment().remove("JDK_JAVA_OPTIONS");
+        Process process = builder.start();
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+        return process.exitValue();
+    }
+
+    /**
+     * Streams a generated base of 16 000 elements of 4 KB each, 64 MB in total, through a keyed merge
+     * with an overlay that refers to every element, and exits with 0 if the whole result was written.
+     */
+    static final class HeapBound {
+
+        static final int WRITTEN = 0;
+        static final int OUT_OF_MEMORY = 1;
+        static final int INCOMPLETE = 2;
+        private static final int ELEMENTS = 16000;
+
+        public static void main(String[] args) throws IOException {
+            long spillBudget = Long.parseLong(args[0]);
+            MergeConfig config = MergeConfig.builder().spillBudget(spillBudget > 0 ? spillBudget : null).build().addRule("items", "sku");
+
+            StringBuilder overlay = new StringBuilder("{\"items\":[");
+            for (int i = 0; i < ELEMENTS; i++) {
+                overlay.append(i > 0 ? "," : "").append(String.format("{\"sku\":%d,\"qty\":%d}", i, i));
+            }
+            overlay.append("]}");
+
+            long[] written = new long[1];
+            OutputStream output = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    written[0]++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    written[0] += len;
+                }
+            };
+            try {
+                new JsonMerger(config).merge(base(), new ByteArrayInputStream(overlay.toString().getBytes(StandardCharsets.UTF_8)), output);
+            } catch (OutOfMemoryError e) {
+                System.exit(OUT_OF_MEMORY);
+            }
+            System.exit(written[0] > (long) ELEMENTS * 4096 ? WRITTEN : INCOMPLETE);
+        }
+
+        /**
+         * Generates the base document element by element, so that it is never held in memory as a whole.
+         */
+        private static InputStream base() {
+            char[] payload = new char[4096];
+            Arrays.fill(payload, 'x');
+            String padding = new String(payload);
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                private int next = -1;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return next <= ELEMENTS;
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    String chunk;
+                    if (next < 0) {
+                        chunk = "{\"items\":[";
+                    } else if (next == ELEMENTS) {
+                        chunk = "]}";
+                    } else {
+                        chunk = String.format("%s{\"sku\":%d,\"payload\":\"%s\"}", next > 0 ? "," : "", next, padding);
+                    }
+                    next++;
+                    return new ByteArrayInputStream(chunk.getBytes(StandardCharsets.UTF_8));
+                }
+            });
+        }
+    }
+}
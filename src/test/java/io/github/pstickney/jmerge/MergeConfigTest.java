@@ -0,0 +1,97 @@
+package io.github.pstickney.jmerge;
+
+import io.github.pstickney.jmerge.exception.ConfigException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MergeConfigTest {
+
+    @Test
+    void testCompileSnapshotsRules() {
+        MergeConfig config = MergeConfig.builder().build()
+            .addRule("list", "name")
+            .addRule("list", "name");
+        CompiledConfig compiled = config.compile();
+        config.addRule("other", Strategy.REPLACE);
+        config.getRules().get(0).setKeyField("id");
+
+        assertEquals(1, compiled.getRules().size());
+        assertEquals("name", compiled.getRuleIndex().find("list").getKeyField());
+        assertNull(compiled.getRuleIndex().find("other"));
+    }
+
+    @Test
+    void testConflictingRules() {
+        MergeConfig config = MergeConfig.builder().build()
+            .addRule("list", "name")
+            .addRule("list", "id");
+
+        assertThrows(ConfigException.class, config::compile);
+        assertThrows(ConfigException.class, MergeConfig.builder().build()
+            .addRule("list", "name")
+            .addRule("list[*]", "id")::compile);
+        assertEquals(1, MergeConfig.builder().build()
+            .addRule("list", "name")
+            .addRule("list[*]", "name")
+            .compile().getRules().size());
+    }
+
+    @Test
+    void testInvalidObjectStrategy() {
+        MergeConfig config = MergeConfig.builder()
+            .objectStrategy(Strategy.APPEND)
+            .build();
+
+        assertThrows(ConfigException.class, () -> new JsonMerger(config));
+    }
+
+    @Test
+    void testInvalidRules() {
+        assertThrows(ConfigException.class, MergeConfig.builder().build().addRule(null, Strategy.REPLACE)::compile);
+        assertThrows(ConfigException.class, MergeConfig.builder().build().addRule("list", "name", null)::compile);
+        assertThrows(ConfigException.class, MergeConfig.builder().build().addRule("list", "meta.\"app.id")::compile);
+        assertThrows(ConfigException.class, MergeConfig.builder().build().addRule("list[0]", Strategy.REPLACE)::compile);
+    }
+
+    @Test
+    void testInvalidParallelThreshold() {
+        MergeConfig config = MergeConfig.builder()
+            .parallelThreshold(0)
+            .build();
+
+        assertThrows(ConfigException.class, config::compile);
+    }
+
+    @Test
+    void testInvalidSpillBudget() {
+        MergeConfig config = MergeConfig.builder()
+            .spillBudget(0L)
+            .build();
+
+        assertThrows(ConfigException.class, config::compile);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void testMergerConfigField() {
+        MergeConfig config = MergeConfig.builder()
+            .prettyPrint(true)
+            .arrayStrategy(Strategy.REPLACE)
+            .spillBudget(1024L)
+            .build()
+            .addRule("list", "name");
+
+        // Subclasses written against the MergeConfig field still read the configuration from it
+        JsonMerger merger = new JsonMerger(config) {
+            {
+                assertEquals(config, this.config);
+                this.config.setArrayStrategy(Strategy.APPEND);
+            }
+        };
+        assertEquals(Strategy.REPLACE, merger.getConfig().getArrayStrategy());
+        assertEquals(config, new JsonMerger(config.compile()).config);
+    }
+}
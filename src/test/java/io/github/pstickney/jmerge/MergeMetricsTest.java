@@ -0,0 +1,108 @@
+package io.github.pstickney.jmerge;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MergeMetricsTest {
+
+    @Test
+    void testCounters() throws IOException {
+        MergeMetrics metrics = new MergeMetrics();
+        MergeConfig config = MergeConfig.builder()
+            .listener(metrics)
+            .build()
+            .addRule("list", "id")
+            .addRule("r", Strategy.REPLACE);
+        JsonMerger merger = new JsonMerger(config);
+
+        String merged = merger.merge(
+            "{\"a\":{\"x\":1},\"list\":[{\"id\":1,\"v\":1},{\"id\":2}],\"r\":{\"k\":1}}",
+            "{\"a\":{\"y\":2},\"list\":[{\"id\":2,\"v\":3}],\"r\":{\"k\":2},\"n\":{\"z\":1}}");
+        assertEquals("{\"a\":{\"x\":1,\"y\":2},\"list\":[{\"id\":2,\"v\":3}],\"r\":{\"k\":2},\"n\":{\"z\":1}}", merged);
+
+        // root, a, list, the matched element and its id are merged; r and n are copied as a whole
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(5, snapshot.get("nodes.visited"));
+        assertEquals(2, snapshot.get("nodes.copied"));
+        assertEquals(1, snapshot.get("copies.r"));
+        assertEquals(1, snapshot.get("copies.n"));
+        assertEquals(2, snapshot.get("rules.list"));
+        assertEquals(1, snapshot.get("rules.r"));
+        assertEquals(1, snapshot.get("arrays.MERGE.merges"));
+        assertEquals(3, snapshot.get("arrays.MERGE.elements"));
+        assertEquals(2, snapshot.get("arrays.MERGE.max"));
+        for (String field : new String[]{"a", "list", "r", "n"}) {
+            assertEquals(1, snapshot.get("time." + field + ".count"));
+        }
+
+        metrics.reset();
+        assertEquals(0, metrics.getNodesVisited());
+    }
+
+    @Test
+    void testRootArrayIsNotTimed() throws IOException {
+        for (boolean parallel : new boolean[]{false, true}) {
+            MergeMetrics metrics = new MergeMetrics();
+            MergeConfig config = MergeConfig.builder()
+                .listener(metrics)
+                .parallel(parallel)
+                .parallelThreshold(1)
+                .build()
+                .addRule("", "id");
+            JsonMerger merger = new JsonMerger(config);
+
+            // The fields of the elements of a root array are not fields of a root object
+            merger.merge("[{\"id\":1,\"v\":{\"a\":1}},{\"id\":2,\"v\":{\"a\":2}}]", "[{\"id\":1,\"v\":{\"b\":1}},{\"id\":2,\"v\":{\"b\":2}}]");
+            assertEquals(7, metrics.getNodesVisited());
+            assertTrue(metrics.snapshot().keySet().stream().noneMatch(key -> key.startsWith("time.")), "parallel " + parallel);
+        }
+    }
+
+    @Test
+    void testStreamingCounters() throws IOException {
+        MergeMetrics metrics = new MergeMetrics();
+        MergeConfig config = MergeConfig.builder()
+            .listener(metrics)
+            .build()
+            .addRule("", "id");
+        JsonMerger merger = new JsonMerger(config);
+
+        // A streamed root array reports its sizes once the base has been read, and its elements are not timed
+        StringWriter output = new StringWriter();
+        merger.merge(new StringReader("[{\"id\":1,\"v\":1},{\"id\":2},{\"id\":3}]"), new StringReader("[{\"id\":1,\"v\":2},{\"id\":3}]"), output);
+        assertEquals("[{\"id\":1,\"v\":2},{\"id\":3}]", output.toString());
+
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get("arrays.MERGE.merges"));
+        assertEquals(5, snapshot.get("arrays.MERGE.elements"));
+        assertEquals(3, snapshot.get("arrays.MERGE.max"));
+        assertTrue(snapshot.keySet().stream().noneMatch(key -> key.startsWith("time.")));
+    }
+
+    @Test
+    void testParallelCounters() throws IOException {
+        MergeMetrics metrics = new MergeMetrics();
+        MergeConfig config = MergeConfig.builder()
+            .listener(metrics)
+            .parallel(true)
+            .parallelThreshold(1)
+            .build();
+        JsonMerger merger = new JsonMerger(config);
+
+        merger.merge("{\"a\":{\"x\":1},\"b\":[1]}", "{\"a\":{\"y\":2},\"b\":[2],\"c\":{\"z\":1}}");
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.get("nodes.visited"));
+        assertEquals(1, snapshot.get("copies.c"));
+        assertEquals(1, snapshot.get("arrays.APPEND.merges"));
+        for (String field : new String[]{"a", "b", "c"}) {
+            assertEquals(1, snapshot.get("time." + field + ".count"));
+        }
+    }
+}
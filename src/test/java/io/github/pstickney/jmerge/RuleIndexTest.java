@@ -0,0 +1,102 @@
+package io.github.pstickney.jmerge;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RuleIndexTest {
+
+    @Test
+    void testSingleSegmentWildcard() {
+        RuleIndex index = RuleIndex.compile(Arrays.asList(new MergeRule("spec.*.image", null, Strategy.REPLACE)));
+
+        assertEquals("spec.*.image", index.find("spec.app.image").getPath());
+        assertEquals("spec.*.image", index.find("spec.image.image").getPath());
+        assertNull(index.find("spec.image"));
+        assertNull(index.find("spec.app.sidecar.image"));
+    }
+
+    @Test
+    void testDeepWildcard() {
+        RuleIndex index = RuleIndex.compile(Arrays.asList(
+            new MergeRule("**.containers", "name", Strategy.MERGE),
+            new MergeRule("meta.**", null, Strategy.REPLACE)
+        ));
+
+        assertEquals("**.containers", index.find("containers").getPath());
+        assertEquals("**.containers", index.find("spec.template.spec.containers").getPath());
+        assertEquals("meta.**", index.find("meta").getPath());
+        assertEquals("meta.**", index.find("meta.labels.app").getPath());
+        assertNull(index.find("spec.containers.image"));
+    }
+
+    @Test
+    void testPrecedence() {
+        RuleIndex index = RuleIndex.compile(Arrays.asList(
+            new MergeRule("*.b", null, Strategy.REPLACE),
+            new MergeRule("a.*", null, Strategy.MERGE),
+            new MergeRule("a.b", null, Strategy.APPEND)
+        ));
+
+        assertEquals(Strategy.APPEND, index.find("a.b").getStrategy());
+        assertEquals(Strategy.REPLACE, index.find("x.b").getStrategy());
+        assertEquals(Strategy.MERGE, index.find("a.x").getStrategy());
+    }
+
+    @Test
+    void testArrayElements() {
+        RuleIndex index = RuleIndex.compile(Arrays.asList(
+            new MergeRule("[*].id", null, Strategy.REPLACE),
+            new MergeRule("spec.containers[*].ports", null, Strategy.REPLACE)
+        ));
+
+        assertEquals(Strategy.REPLACE, index.find("id").getStrategy());
+        assertEquals(Strategy.REPLACE, index.find("spec.containers.ports").getStrategy());
+        assertEquals(Strategy.REPLACE, index.find("spec.containers[*].ports").getStrategy());
+        assertThrows(IllegalArgumentException.class, () -> RuleIndex.compile(Arrays.asList(new MergeRule("list[0]", null, Strategy.REPLACE))));
+    }
+
+    @Test
+    void testCursor() {
+        RuleIndex index = RuleIndex.compile(Arrays.asList(new MergeRule("spec.*.image", null, Strategy.REPLACE)));
+        RuleIndex.Node root = index.root();
+
+        assertSame(root, root.child(""));
+        assertSame(root.child("spec").child("app").child("image"), root.child("spec").child("app.image"));
+        assertEquals(Strategy.REPLACE, root.child("spec.app.image").getRule().getStrategy());
+        assertSame(RuleIndex.Node.NONE, root.child("status"));
+        assertSame(RuleIndex.Node.NONE, root.child("spec.app.image.tag"));
+    }
+
+    @Test
+    void testManyRules() {
+        List<MergeRule> literals = new ArrayList<>();
+        List<MergeRule> wildcards = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            literals.add(new MergeRule("spec.template.spec.containers" + i, "name", Strategy.MERGE));
+            wildcards.add(new MergeRule(i % 2 == 0 ? "spec.*.spec.containers" + i : "**.containers" + i, "name", Strategy.MERGE));
+        }
+
+        // States are built as they are reached, so compiling grows with the rules rather than with their combinations
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            RuleIndex index = RuleIndex.compile(literals);
+            assertEquals("spec.template.spec.containers49999", index.find("spec.template.spec.containers49999").getPath());
+            assertNull(index.find("spec.template.spec.volumes"));
+
+            RuleIndex wildcardIndex = RuleIndex.compile(wildcards);
+            assertEquals("spec.*.spec.containers49998", wildcardIndex.find("spec.template.spec.containers49998").getPath());
+            assertEquals("**.containers49999", wildcardIndex.find("spec.template.spec.containers49999").getPath());
+            assertEquals("**.containers1", wildcardIndex.find("a.b.c.containers1").getPath());
+            assertNull(wildcardIndex.find("spec.template.spec.volumes"));
+        });
+    }
+}
@@ -1,10 +1,17 @@
 package io.github.pstickney.jmerge;
 
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -20,10 +27,146 @@ class YamlMergerTest {
     @ParameterizedTest(name = "{0}")
     @MethodSource("scenarios")
     void testScenarios(Scenario scenario) throws IOException {
-        MergeConfig config = scenario.getConfig() == null ? new MergeConfig() : mapper.readValue(scenario.getConfig(), MergeConfig.class);
+        MergeConfig config = config(scenario);
         YamlMerger merger = new YamlMerger(config);
         String merged = merger.merge(scenario.getBase().trim(), scenario.getOverlay().trim());
 
         assertEquals(scenario.getExpected().trim(), merged.trim(), "Failed on " + scenario.getFolder());
     }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testStreamingScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        StringWriter merged = new StringWriter();
+        merger.merge(new StringReader(scenario.getBase().trim()), new StringReader(scenario.getOverlay().trim()), merged);
+
+        assertEquals(scenario.getExpected().trim(), merged.toString().trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testByteScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        byte[] merged = merger.merge(scenario.getBase().trim().getBytes(StandardCharsets.UTF_8), scenario.getOverlay().trim().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(scenario.getExpected().trim(), new String(merged, StandardCharsets.UTF_8).trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testPreparedScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        PreparedBase base = merger.prepare(scenario.getBase().trim());
+
+        // Merging twice checks that the prepared base is left untouched by a merge
+        for (int i = 0; i < 2; i++) {
+            String merged = base.merge(scenario.getOverlay().trim());
+            assertEquals(scenario.getExpected().trim(), merged.trim(), "Failed on " + scenario.getFolder());
+            JsonNode node = base.merge(mapper.readTree(scenario.getOverlay()));
+            assertEquals(mapper.readTree(scenario.getExpected()), node, "Failed on " + scenario.getFolder());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testSessionScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        JsonNode base = mapper.readTree(scenario.getBase());
+        JsonNode overlay = mapper.readTree(scenario.getOverlay());
+        MergeSession session = merger.session(base, overlay.isArray() ? mapper.createArrayNode() : mapper.createObjectNode());
+
+        // Build the overlay up child by child, then replace it with the base and back again
+        if (overlay.isArray()) {
+            for (int i = 0; i < overlay.size(); i++) {
+                session.set(JsonPointer.empty().appendIndex(i), overlay.get(i));
+            }
+        } else {
+            for (Map.Entry<String, JsonNode> entry : overlay.properties()) {
+                session.set(JsonPointer.empty().appendProperty(entry.getKey()), entry.getValue());
+            }
+        }
+        assertEquals(mapper.readTree(scenario.getExpected()), session.getResult(), "Failed on " + scenario.getFolder());
+        assertEquals(merger.merge(base, base), session.update(base), "Failed on " + scenario.getFolder());
+        assertEquals(mapper.readTree(scenario.getExpected()), session.update(overlay), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testCachingScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        CachingMerger merger = new CachingMerger(new YamlMerger(config), 16);
+
+        // The second round of merges must be served from the cache
+        for (int i = 0; i < 2; i++) {
+            String merged = merger.merge(scenario.getBase().trim(), scenario.getOverlay().trim());
+            assertEquals(scenario.getExpected().trim(), merged.trim(), "Failed on " + scenario.getFolder());
+            byte[] bytes = merger.merge(scenario.getBase().getBytes(StandardCharsets.UTF_8), scenario.getOverlay().getBytes(StandardCharsets.UTF_8));
+            assertEquals(mapper.readTree(scenario.getExpected()), mapper.readTree(bytes), "Failed on " + scenario.getFolder());
+        }
+        assertEquals(new CacheStats(2, 2, 0, 2), merger.getStats());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testDeltaScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        JsonNode base = mapper.readTree(scenario.getBase());
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        for (DeltaFormat format : DeltaFormat.values()) {
+            MergeDelta delta = merger.mergeWithDelta(base, mapper.readTree(scenario.getOverlay()), format);
+            assertEquals(expected, delta.getResult(), "Failed on " + scenario.getFolder());
+            assertEquals(expected, merger.applyDelta(base, delta.getPatch(), format), "Failed on " + scenario.getFolder());
+        }
+        assertEquals(mapper.readTree(scenario.getBase()), base, "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testViewScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        JsonNode expected = mapper.readTree(scenario.getExpected());
+
+        MergedView view = merger.view(scenario.getBase(), scenario.getOverlay());
+        for (String field : view.fieldNames()) {
+            assertEquals(expected.get(field), view.get(field).materialize(), "Failed on " + scenario.getFolder());
+        }
+        assertEquals(expected, view.materialize(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testLayeredScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        String base = scenario.getBase().trim();
+        String overlay = scenario.getOverlay().trim();
+        String folded = merger.merge(merger.merge(merger.merge(base, overlay), base), overlay);
+        String merged = merger.merge(base, Arrays.asList(overlay, base, overlay));
+
+        assertEquals(folded.trim(), merged.trim(), "Failed on " + scenario.getFolder());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void testObjectScenarios(Scenario scenario) throws IOException {
+        MergeConfig config = config(scenario);
+        YamlMerger merger = new YamlMerger(config);
+        Object base = mapper.readValue(scenario.getBase(), Object.class);
+        Object overlay = mapper.readValue(scenario.getOverlay(), Object.class);
+        Object merged = merger.merge(base, overlay, Object.class);
+
+        assertEquals(mapper.readValue(scenario.getExpected(), Object.class), merged, "Failed on " + scenario.getFolder());
+    }
+
+    private MergeConfig config(Scenario scenario) throws IOException {
+        return scenario.getConfig() == null ? new MergeConfig() : mapper.readValue(scenario.getConfig(), MergeConfig.class);
+    }
 }
@@ -0,0 +1,83 @@
+package io.github.pstickney.jmerge.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchMergerTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "yaml"})
+    void testScenarioDirectory(String type, @TempDir Path out) throws Exception {
+        Path dir = Paths.get(getClass().getResource("/scenarios/" + type).toURI());
+        BatchSummary summary = BatchMerger.builder().threads(4).maxInFlight(2).build().run(dir, out);
+
+        List<Path> folders;
+        try (Stream<Path> paths = Files.list(dir)) {
+            folders = paths.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+        assertEquals(folders.size(), summary.getSucceeded());
+        assertEquals(0, summary.getFailed());
+        for (Path folder : folders) {
+            String expected = read(folder.resolve("expected." + type));
+            assertEquals(expected.trim(), read(out.resolve(folder.getFileName() + "." + type)).trim(), "Failed on " + folder.getFileName());
+        }
+    }
+
+    @Test
+    void testFailuresAreReportedPerItem(@TempDir Path dir, @TempDir Path out) throws Exception {
+        write(dir.resolve("ok/base.json"), "{\"a\":1}");
+        write(dir.resolve("ok/overlay.json"), "{\"b\":2}");
+        write(dir.resolve("missing/base.json"), "{\"a\":1}");
+        write(dir.resolve("invalid/base.json"), "{\"a\":1}");
+        write(dir.resolve("invalid/overlay.json"), "{\"b\":2}");
+        write(dir.resolve("invalid/config.json"), "{\"parallelThreshold\":0}");
+
+        BatchSummary summary = BatchMerger.builder().threads(2).maxInFlight(1).build().run(dir, out);
+
+        assertEquals(1, summary.getSucceeded());
+        assertEquals(2, summary.getFailed());
+        assertEquals("{\"a\":1,\"b\":2}", read(out.resolve("ok.json")));
+        assertEquals("[invalid, missing]", summary.getFailures().stream().map(result -> result.getItem().getName()).sorted().collect(Collectors.toList()).toString());
+    }
+
+    @Test
+    void testCli(@TempDir Path dir) throws Exception {
+        write(dir.resolve("in/base.yaml"), "a: 1\nlist:\n  - x\n");
+        write(dir.resolve("in/overlay.yaml"), "list:\n  - z\n");
+        write(dir.resolve("manifest.yaml"), "- base: in/base.yaml\n  overlay: in/overlay.yaml\n  output: out/merged.yaml\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int status = BatchCli.run(new String[]{"--manifest", dir.resolve("manifest.yaml").toString(), "--threads", "2"},
+            new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+
+        assertEquals(0, status, err.toString("UTF-8"));
+        assertEquals("---\na: 1\nlist:\n  - x\n  - z", read(dir.resolve("out/merged.yaml")).trim());
+        assertTrue(out.toString("UTF-8").startsWith("Merged 1 of 1 items"));
+        assertEquals(2, BatchCli.run(new String[]{"--dir", dir.toString()}, new PrintStream(out), new PrintStream(err)));
+    }
+
+    private static void write(Path path, String content) throws Exception {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path path) throws Exception {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.pstickney.jmerge.MergeConfig;
+import io.github.pstickney.jmerge.Strategy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic base/overlay document pairs and matching merge configurations for benchmarks.
+ * Every object has {@code width} fields: nested objects until {@code depth} is reached, an {@code items}
+ * array of {@code arraySize} keyed elements, and scalars. The overlay has the same shape but only touches
+ * every other field, changes some values, adds new fields and overlaps the array keys by half.
+ * Generation is seeded, so the same settings always produce the same documents.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentGenerator {
+
+    private static final JsonNodeFactory FACTORY = JsonNodeFactory.instance;
+
+    @Builder.Default
+    private int depth = 3;
+    @Builder.Default
+    private int width = 8;
+    @Builder.Default
+    private int arraySize = 16;
+    @Builder.Default
+    private int ruleCount = 0;
+    @Builder.Default
+    private long seed = 42;
+
+    /**
+     * Generates the base document.
+     *
+     * @return the base JsonNode
+     */
+    public JsonNode base() {
+        return object(new Random(seed), depth, false);
+    }
+
+    /**
+     * Generates the overlay document.
+     *
+     * @return the overlay JsonNode
+     */
+    public JsonNode overlay() {
+        return object(new Random(seed + 1), depth, true);
+    }
+
+    /**
+     * Generates an array of {@code arraySize} keyed elements, for benchmarking a single keyed array merge.
+     *
+     * @param overlay whether to generate the overlay variant
+     * @return the ArrayNode
+     */
+    public ArrayNode keyedArray(boolean overlay) {
+        return items(new Random(overlay ? seed + 1 : seed), overlay);
+    }
+
+    /**
+     * Builds a configuration with the given default strategies. When arrays are merged by key, a keyed
+     * rule is added for every generated array path. The rule list is padded with rules for paths that
+     * never occur until it holds at least {@code ruleCount} rules.
+     *
+     * @param objectStrategy the default object strategy
+     * @param arrayStrategy  the default array strategy
+     * @return the MergeConfig
+     */
+    public MergeConfig config(Strategy objectStrategy, Strategy arrayStrategy) {
+        MergeConfig config = MergeConfig.builder()
+            .objectStrategy(objectStrategy)
+            .arrayStrategy(arrayStrategy)
+            .build();
+        if (arrayStrategy == Strategy.MERGE) {
+            for (String path : arrayPaths()) {
+                config.addRule(path, "id");
+            }
+        }
+        for (int i = config.getRules().size(); i < ruleCount; i++) {
+            config.addRule("unused.path" + i, Strategy.REPLACE);
+        }
+        return config;
+    }
+
+    /**
+     * Lists the paths of all generated arrays, the root array being the empty path.
+     *
+     * @return the array paths
+     */
+    public List<String> arrayPaths() {
+        List<String> paths = new ArrayList<>();
+        paths.add("");
+        collectArrayPaths("", depth, paths);
+        return paths;
+    }
+
+    private void collectArrayPaths(String path, int level, List<String> paths) {
+        paths.add(path.isEmpty() ? "items" : path + ".items");
+        if (level == 0)
+            return;
+        for (int i = 0; i < width; i++) {
+            if (i % 4 == 0)
+                collectArrayPaths(path.isEmpty() ? "obj" + i : path + ".obj" + i, level - 1, paths);
+        }
+    }
+
+    private ObjectNode object(Random random, int level, boolean overlay) {
+        ObjectNode node = FACTORY.objectNode();
+        for (int i = 0; i < width; i++) {
+            if (overlay && i % 2 == 1)
+                continue;
+            if (level > 0 && i % 4 == 0) {
+                node.set("obj" + i, object(random, level - 1, overlay));
+            } else if (i % 4 == 1) {
+                node.put("num" + i, random.nextInt(1000));
+            } else {
+                node.put("str" + i, "value-" + random.nextInt(1000));
+            }
+        }
+        node.set("items", items(random, overlay));
+        if (overlay)
+            node.put("added" + level, true);
+        return node;
+    }
+
+    private ArrayNode items(Random random, boolean overlay) {
+        ArrayNode array = FACTORY.arrayNode();
+        int offset = overlay ? arraySize / 2 : 0;
+        for (int i = 0; i < arraySize; i++) {
+            ObjectNode item = array.addObject();
+            item.put("id", "item-" + (offset + i));
+            item.put("value", random.nextInt(1000));
+            item.putObject("meta").put("enabled", random.nextBoolean());
+        }
+        return array;
+    }
+}
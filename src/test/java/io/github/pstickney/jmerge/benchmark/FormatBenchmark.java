@@ -0,0 +1,83 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.github.pstickney.jmerge.JsonMerger;
+import io.github.pstickney.jmerge.MapperMerger;
+import io.github.pstickney.jmerge.MergeConfig;
+import io.github.pstickney.jmerge.Merger;
+import io.github.pstickney.jmerge.Strategy;
+import io.github.pstickney.jmerge.YamlMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the formats on the same generated documents: the full byte-to-byte merge with streaming
+ * of the base, and parsing alone, for JSON, YAML, Smile and CBOR.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    @Param({"json", "yaml", "smile", "cbor"})
+    private String format;
+
+    private Merger merger;
+    private ObjectMapper mapper;
+    private byte[] base;
+    private byte[] overlay;
+
+    @Setup
+    public void setup() throws IOException {
+        DocumentGenerator generator = DocumentGenerator.builder().build();
+        MergeConfig config = generator.config(Strategy.MERGE, Strategy.MERGE);
+        switch (format) {
+            case "yaml":
+                merger = new YamlMerger(config);
+                mapper = new YAMLMapper();
+                break;
+            case "smile":
+                merger = MapperMerger.smile(config);
+                mapper = new SmileMapper();
+                break;
+            case "cbor":
+                merger = MapperMerger.cbor(config);
+                mapper = new CBORMapper();
+                break;
+            default:
+                merger = new JsonMerger(config);
+                mapper = new ObjectMapper();
+        }
+        base = mapper.writeValueAsBytes(generator.base());
+        overlay = mapper.writeValueAsBytes(generator.overlay());
+    }
+
+    @Benchmark
+    public byte[] merge() throws IOException {
+        return merger.merge(base, overlay);
+    }
+
+    @Benchmark
+    public JsonNode parse() throws IOException {
+        return mapper.readTree(base);
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.pstickney.jmerge.JsonMerger;
+import io.github.pstickney.jmerge.MergeConfig;
+import io.github.pstickney.jmerge.PreparedBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single keyed array merge as the number of elements grows,
+ * against a plain base and against a {@link PreparedBase} whose key index is already built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyedArrayBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int arraySize;
+
+    private JsonMerger merger;
+    private JsonNode base;
+    private JsonNode overlay;
+    private PreparedBase prepared;
+
+    @Setup
+    public void setup() {
+        DocumentGenerator generator = DocumentGenerator.builder()
+            .arraySize(arraySize)
+            .build();
+        merger = new JsonMerger(MergeConfig.builder().build().addRule("", "id"));
+        base = generator.keyedArray(false);
+        overlay = generator.keyedArray(true);
+        prepared = merger.prepare(base);
+    }
+
+    @Benchmark
+    public JsonNode merge() {
+        return merger.merge(base, overlay);
+    }
+
+    @Benchmark
+    public JsonNode mergePrepared() {
+        return prepared.merge(overlay);
+    }
+}
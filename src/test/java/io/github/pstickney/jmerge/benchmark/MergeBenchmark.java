@@ -0,0 +1,62 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.pstickney.jmerge.JsonMerger;
+import io.github.pstickney.jmerge.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link JsonMerger#merge(JsonNode, JsonNode)} on generated documents for every combination
+ * of default object and array strategy, and for a growing number of configured rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+    @Param({"MERGE", "REPLACE"})
+    private Strategy objectStrategy;
+
+    @Param({"APPEND", "REPLACE", "MERGE"})
+    private Strategy arrayStrategy;
+
+    @Param({"0", "1000"})
+    private int ruleCount;
+
+    private JsonMerger merger;
+    private JsonNode base;
+    private JsonNode overlay;
+
+    @Setup
+    public void setup() {
+        DocumentGenerator generator = DocumentGenerator.builder()
+            .depth(3)
+            .width(8)
+            .arraySize(16)
+            .ruleCount(ruleCount)
+            .build();
+        merger = new JsonMerger(generator.config(objectStrategy, arrayStrategy));
+        base = generator.base();
+        overlay = generator.overlay();
+    }
+
+    @Benchmark
+    public JsonNode merge() {
+        return merger.merge(base, overlay);
+    }
+}
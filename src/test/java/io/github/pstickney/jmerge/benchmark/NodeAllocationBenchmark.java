@@ -0,0 +1,57 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.pstickney.jmerge.JsonMerger;
+import io.github.pstickney.jmerge.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocations of building a merged tree from wide objects and arrays, without structural
+ * sharing so that every result container is created by the Merger. The generated documents are seeded,
+ * so the merged tree always has 28 731 nodes with {@code APPEND} and 15 131 nodes with {@code MERGE};
+ * divide {@code gc.alloc.rate.norm} by them for the bytes allocated per merged node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeAllocationBenchmark {
+
+    @Param({"APPEND", "MERGE"})
+    private Strategy arrayStrategy;
+
+    private JsonMerger merger;
+    private JsonNode base;
+    private JsonNode overlay;
+
+    @Setup
+    public void setup() {
+        DocumentGenerator generator = DocumentGenerator.builder()
+            .depth(3)
+            .width(16)
+            .arraySize(32)
+            .build();
+        merger = new JsonMerger(generator.config(Strategy.MERGE, arrayStrategy));
+        base = generator.base();
+        overlay = generator.overlay();
+    }
+
+    @Benchmark
+    public JsonNode merge() {
+        return merger.merge(base, overlay);
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import io.github.pstickney.jmerge.MergeConfig;
+import io.github.pstickney.jmerge.MergeRule;
+import io.github.pstickney.jmerge.RuleIndex;
+import io.github.pstickney.jmerge.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linear {@link MergeConfig#findRule(String)} scan against the compiled {@link RuleIndex}
+ * as the number of configured rules grows. The indexed lookup should stay flat, also when every rule
+ * path contains wildcards, and compiling the index, including building the states of a first lookup,
+ * should grow linearly with the number of rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleLookupBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int ruleCount;
+
+    private MergeConfig config;
+    private MergeConfig wildcards;
+    private RuleIndex index;
+    private RuleIndex wildcardIndex;
+    private String lastPath;
+    private String missingPath;
+
+    @Setup
+    public void setup() {
+        config = new MergeConfig();
+        for (int i = 0; i < ruleCount; i++) {
+            config.addRule("spec.template.spec.containers" + i, "name", Strategy.MERGE);
+        }
+        index = RuleIndex.compile(config.getRules());
+        wildcards = new MergeConfig();
+        for (int i = 0; i < ruleCount; i++) {
+            wildcards.addRule(i % 2 == 0 ? "spec.*.spec.containers" + i : "**.containers" + i, "name", Strategy.MERGE);
+        }
+        wildcardIndex = RuleIndex.compile(wildcards.getRules());
+        MergeRule last = config.getRules().get(ruleCount - 1);
+        lastPath = new String(last.getPath());
+        missingPath = "spec.template.spec.volumes";
+    }
+
+    @Benchmark
+    public MergeRule linearHit() {
+        return config.findRule(lastPath);
+    }
+
+    @Benchmark
+    public MergeRule linearMiss() {
+        return config.findRule(missingPath);
+    }
+
+    @Benchmark
+    public MergeRule indexedHit() {
+        return index.find(lastPath);
+    }
+
+    @Benchmark
+    public MergeRule indexedMiss() {
+        return index.find(missingPath);
+    }
+
+    @Benchmark
+    public MergeRule wildcardHit() {
+        return wildcardIndex.find(lastPath);
+    }
+
+    @Benchmark
+    public MergeRule wildcardMiss() {
+        return wildcardIndex.find(missingPath);
+    }
+
+    @Benchmark
+    public MergeRule compile() {
+        return RuleIndex.compile(config.getRules()).find(lastPath);
+    }
+
+    @Benchmark
+    public MergeRule compileWildcards() {
+        return RuleIndex.compile(wildcards.getRules()).find(lastPath);
+    }
+}
@@ -0,0 +1,72 @@
+package io.github.pstickney.jmerge.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import io.github.pstickney.jmerge.CachingMerger;
+import io.github.pstickney.jmerge.JsonMerger;
+import io.github.pstickney.jmerge.MergeConfig;
+import io.github.pstickney.jmerge.Merger;
+import io.github.pstickney.jmerge.Strategy;
+import io.github.pstickney.jmerge.YamlMerger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full String-to-String merge path, including parsing and serialization,
+ * for {@link JsonMerger} and {@link YamlMerger}, and the same merge answered by a {@link CachingMerger}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringMergeBenchmark {
+
+    @Param({"json", "yaml"})
+    private String format;
+
+    private Merger merger;
+    private CachingMerger cachingMerger;
+    private String base;
+    private String overlay;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        DocumentGenerator generator = DocumentGenerator.builder().build();
+        MergeConfig config = generator.config(Strategy.MERGE, Strategy.MERGE);
+        ObjectMapper mapper;
+        if ("yaml".equals(format)) {
+            merger = new YamlMerger(config);
+            mapper = new YAMLMapper();
+        } else {
+            merger = new JsonMerger(config);
+            mapper = new ObjectMapper();
+        }
+        base = mapper.writeValueAsString(generator.base());
+        overlay = mapper.writeValueAsString(generator.overlay());
+        cachingMerger = new CachingMerger(merger, 16);
+    }
+
+    @Benchmark
+    public String merge() throws JsonProcessingException {
+        return merger.merge(base, overlay);
+    }
+
+    @Benchmark
+    public String mergeCached() throws JsonProcessingException {
+        return cachingMerger.merge(base, overlay);
+    }
+}